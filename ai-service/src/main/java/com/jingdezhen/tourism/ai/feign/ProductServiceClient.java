@@ -7,6 +7,8 @@ import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.List;
+
 /**
  * 商品服务Feign客户端
  */
@@ -21,5 +23,10 @@ public interface ProductServiceClient {
             @RequestParam(required = false) String region,
             @RequestParam(required = false) String keyword
     );
-}
 
+    /**
+     * 批量获取商品（按传入顺序返回，不存在的商品跳过）
+     */
+    @GetMapping("/batch")
+    Result<List<Product>> getProductsByIds(@RequestParam("ids") List<Long> ids);
+}
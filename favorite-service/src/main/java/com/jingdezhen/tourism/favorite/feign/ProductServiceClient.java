@@ -5,10 +5,19 @@ import com.jingdezhen.tourism.common.vo.Result;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
 
 @FeignClient(name = "product-service", path = "/product")
 public interface ProductServiceClient {
     @GetMapping("/{id}")
     Result<Product> getProductById(@PathVariable Long id);
+
+    /**
+     * 批量获取商品（按传入顺序返回，不存在的商品跳过）
+     */
+    @GetMapping("/batch")
+    Result<List<Product>> getProductsByIds(@RequestParam("ids") List<Long> ids);
 }
 
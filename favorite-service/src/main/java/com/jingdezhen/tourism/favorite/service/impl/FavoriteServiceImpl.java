@@ -27,6 +27,11 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class FavoriteServiceImpl implements FavoriteService {
 
+    /**
+     * product-service 批量查询接口单次最多接受的产品ID数
+     */
+    private static final int PRODUCT_BATCH_LIMIT = 200;
+
     private final FavoriteMapper favoriteMapper;
     private final ProductServiceClient productServiceClient;
 
@@ -84,17 +89,18 @@ public class FavoriteServiceImpl implements FavoriteService {
 
         Page<Favorite> favoritePage = favoriteMapper.selectPage(page, wrapper);
 
-        // 查询产品信息（批量调用product-service）
+        // 查询产品信息（批量调用product-service，每次不超过批量接口的上限）
         List<Long> productIds = favoritePage.getRecords().stream()
                 .map(Favorite::getProductId)
                 .distinct()
                 .collect(Collectors.toList());
 
         Map<Long, Product> productMap = new HashMap<>();
-        for (Long productId : productIds) {
-            Result<Product> productResult = productServiceClient.getProductById(productId);
+        for (int from = 0; from < productIds.size(); from += PRODUCT_BATCH_LIMIT) {
+            List<Long> chunk = productIds.subList(from, Math.min(from + PRODUCT_BATCH_LIMIT, productIds.size()));
+            Result<List<Product>> productResult = productServiceClient.getProductsByIds(chunk);
             if (productResult.getCode() == 200 && productResult.getData() != null) {
-                productMap.put(productId, productResult.getData());
+                productResult.getData().forEach(product -> productMap.put(product.getId(), product));
             }
         }
 
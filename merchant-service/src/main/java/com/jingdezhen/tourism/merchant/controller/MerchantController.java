@@ -43,6 +43,14 @@ public class MerchantController {
         return Result.success("登录成功", result);
     }
 
+    /**
+     * 商户是否可接单（供其他服务调用）
+     */
+    @GetMapping("/{id}/available")
+    public Result<Boolean> isAvailable(@PathVariable Long id) {
+        return Result.success(merchantService.isAvailable(id));
+    }
+
     /**
      * 获取当前商户信息
      */
@@ -48,5 +48,10 @@ public interface MerchantService extends IService<Merchant> {
      * 启用/禁用账户
      */
     void changeStatus(Long merchantId, Integer status);
+
+    /**
+     * 商户是否可接单（审核通过且账户正常，供其他服务调用）
+     */
+    boolean isAvailable(Long merchantId);
 }
 
@@ -169,6 +169,16 @@ public class MerchantServiceImpl extends ServiceImpl<MerchantMapper, Merchant>
         this.updateById(merchant);
     }
 
+    @Override
+    public boolean isAvailable(Long merchantId) {
+        Merchant merchant = this.getOne(new LambdaQueryWrapper<Merchant>()
+                .select(Merchant::getId, Merchant::getAuditStatus, Merchant::getStatus)
+                .eq(Merchant::getId, merchantId));
+        return merchant != null
+                && Integer.valueOf(1).equals(merchant.getAuditStatus())
+                && Integer.valueOf(1).equals(merchant.getStatus());
+    }
+
     /**
      * 将Merchant实体转换为MerchantVO
      */
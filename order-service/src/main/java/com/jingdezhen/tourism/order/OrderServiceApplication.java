@@ -9,7 +9,7 @@ import org.springframework.cloud.openfeign.EnableFeignClients;
 @SpringBootApplication(scanBasePackages = {"com.jingdezhen.tourism.order", "com.jingdezhen.tourism.common"})
 @EnableDiscoveryClient
 @EnableFeignClients(basePackages = "com.jingdezhen.tourism.order.feign")
-@MapperScan("com.jingdezhen.tourism.order.mapper")
+@MapperScan({"com.jingdezhen.tourism.order.mapper", "com.jingdezhen.tourism.common.outbox"})
 public class OrderServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(OrderServiceApplication.class, args);
@@ -27,6 +27,13 @@ public class MyBatisPlusConfig implements MetaObjectHandler {
     public void insertFill(MetaObject metaObject) {
         this.strictInsertFill(metaObject, "createTime", LocalDateTime.class, LocalDateTime.now());
         this.strictInsertFill(metaObject, "updateTime", LocalDateTime.class, LocalDateTime.now());
+        if (metaObject.hasGetter("contactPhoneRev")) {
+            Object contactPhone = getFieldValByName("contactPhone", metaObject);
+            if (contactPhone != null) {
+                this.strictInsertFill(metaObject, "contactPhoneRev", String.class,
+                        new StringBuilder(contactPhone.toString()).reverse().toString());
+            }
+        }
     }
 
     @Override
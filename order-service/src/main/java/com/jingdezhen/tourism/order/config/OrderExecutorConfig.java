@@ -0,0 +1,35 @@
+package com.jingdezhen.tourism.order.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 下单链路并发调用线程池
+ * 远程调用以IO等待为主，线程数可大于CPU核数；队列有界，满时由调用线程自己执行（退化为串行）
+ */
+@Configuration
+public class OrderExecutorConfig {
+
+    @Bean(name = "orderFanOutExecutor", destroyMethod = "shutdown")
+    public ExecutorService orderFanOutExecutor(@Value("${order.fan-out.pool-size:64}") int poolSize,
+                                               @Value("${order.fan-out.queue-capacity:256}") int queueCapacity) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "order-fan-out-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -3,11 +3,18 @@ package com.jingdezhen.tourism.order.controller;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jingdezhen.tourism.common.entity.Orders;
 import com.jingdezhen.tourism.common.utils.TokenUtil;
+import com.jingdezhen.tourism.common.vo.CursorPage;
+import com.jingdezhen.tourism.common.vo.MerchantDashboardVO;
 import com.jingdezhen.tourism.common.vo.Result;
+import com.jingdezhen.tourism.order.service.FlashOrderService;
 import com.jingdezhen.tourism.order.service.MerchantOrderService;
+import com.jingdezhen.tourism.order.service.SalesRollupService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+
 /**
  * 商户订单管理Controller
  */
@@ -17,6 +24,8 @@ import org.springframework.web.bind.annotation.*;
 public class MerchantOrderController {
 
     private final MerchantOrderService merchantOrderService;
+    private final FlashOrderService flashOrderService;
+    private final SalesRollupService salesRollupService;
     private final TokenUtil tokenUtil;
 
     /**
@@ -29,10 +38,29 @@ public class MerchantOrderController {
             @RequestParam(required = false) Integer status,
             @RequestParam(required = false) String orderNo,
             @RequestParam(required = false) String contactPhone,
+            @RequestParam(defaultValue = "false") boolean history,
             @RequestHeader("Authorization") String authHeader
     ) {
         Long merchantId = tokenUtil.getUserIdFromAuth(authHeader);
-        Page<Orders> page = merchantOrderService.getMerchantOrders(merchantId, current, size, status, orderNo, contactPhone);
+        Page<Orders> page = merchantOrderService.getMerchantOrders(merchantId, current, size, status, orderNo, contactPhone, history);
+        return Result.success(page);
+    }
+
+    /**
+     * 游标分页获取商户订单列表（翻页耗时与页码无关）
+     */
+    @GetMapping("/cursor")
+    public Result<CursorPage<Orders>> getMerchantOrdersByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(required = false) Integer status,
+            @RequestParam(required = false) String orderNo,
+            @RequestParam(required = false) String contactPhone,
+            @RequestParam(defaultValue = "false") boolean history,
+            @RequestHeader("Authorization") String authHeader
+    ) {
+        Long merchantId = tokenUtil.getUserIdFromAuth(authHeader);
+        CursorPage<Orders> page = merchantOrderService.getMerchantOrdersByCursor(merchantId, cursor, size, status, orderNo, contactPhone, history);
         return Result.success(page);
     }
 
@@ -101,5 +129,45 @@ public class MerchantOrderController {
         merchantOrderService.refundOrder(id, merchantId);
         return Result.success("退款成功");
     }
-}
 
+    /**
+     * 开启抢购（从产品库存划拨抢购库存，可多次追加）
+     */
+    @PostMapping("/flash/{productId}/arm")
+    public Result<Void> armFlashSale(
+            @PathVariable Long productId,
+            @RequestParam Integer quantity,
+            @RequestHeader("Authorization") String authHeader
+    ) {
+        Long merchantId = tokenUtil.getUserIdFromAuth(authHeader);
+        flashOrderService.arm(productId, merchantId, quantity);
+        return Result.success("抢购已开启");
+    }
+
+    /**
+     * 关闭抢购（剩余抢购库存归还产品库存）
+     */
+    @DeleteMapping("/flash/{productId}")
+    public Result<Integer> disarmFlashSale(
+            @PathVariable Long productId,
+            @RequestHeader("Authorization") String authHeader
+    ) {
+        Long merchantId = tokenUtil.getUserIdFromAuth(authHeader);
+        int returned = flashOrderService.disarm(productId, merchantId);
+        return Result.success("抢购已关闭", returned);
+    }
+
+    /**
+     * 经营看板（默认最近30天）
+     */
+    @GetMapping("/dashboard")
+    public Result<MerchantDashboardVO> getDashboard(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) Long productId,
+            @RequestHeader("Authorization") String authHeader
+    ) {
+        Long merchantId = tokenUtil.getUserIdFromAuth(authHeader);
+        return Result.success(salesRollupService.getDashboard(merchantId, startDate, endDate, productId));
+    }
+}
@@ -2,9 +2,13 @@ package com.jingdezhen.tourism.order.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jingdezhen.tourism.common.dto.OrderCreateDTO;
+import com.jingdezhen.tourism.common.idempotent.Idempotent;
 import com.jingdezhen.tourism.common.utils.TokenUtil;
+import com.jingdezhen.tourism.common.vo.CursorPage;
+import com.jingdezhen.tourism.common.vo.FlashTicketVO;
 import com.jingdezhen.tourism.common.vo.OrderVO;
 import com.jingdezhen.tourism.common.vo.Result;
+import com.jingdezhen.tourism.order.service.FlashOrderService;
 import com.jingdezhen.tourism.order.service.OrdersService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.validation.annotation.Validated;
@@ -19,12 +23,14 @@ import org.springframework.web.bind.annotation.*;
 public class OrdersController {
 
     private final OrdersService ordersService;
+    private final FlashOrderService flashOrderService;
     private final TokenUtil tokenUtil;
 
     /**
-     * 创建订单
+     * 创建订单（支持 Idempotency-Key 请求头，重试时返回首次结果）
      */
     @PostMapping("/create")
+    @Idempotent
     public Result<OrderVO> createOrder(
             @Validated @RequestBody OrderCreateDTO dto,
             @RequestHeader("Authorization") String authHeader) {
@@ -34,9 +40,34 @@ public class OrdersController {
     }
 
     /**
-     * 支付订单（模拟支付）
+     * 抢购下单（异步写库，返回排队凭证号）
+     */
+    @PostMapping("/flash/create")
+    @Idempotent
+    public Result<String> createFlashOrder(
+            @Validated @RequestBody OrderCreateDTO dto,
+            @RequestHeader("Authorization") String authHeader) {
+        Long userId = tokenUtil.getUserIdFromAuth(authHeader);
+        String ticketId = flashOrderService.submit(dto, userId);
+        return Result.success("排队中", ticketId);
+    }
+
+    /**
+     * 查询抢购排队结果
+     */
+    @GetMapping("/flash/ticket/{ticketId}")
+    public Result<FlashTicketVO> getFlashTicket(
+            @PathVariable String ticketId,
+            @RequestHeader("Authorization") String authHeader) {
+        Long userId = tokenUtil.getUserIdFromAuth(authHeader);
+        return Result.success(flashOrderService.getTicket(ticketId, userId));
+    }
+
+    /**
+     * 支付订单（模拟支付，支持 Idempotency-Key 请求头）
      */
     @PostMapping("/pay/{orderId}")
+    @Idempotent
     public Result<Void> payOrder(
             @PathVariable Long orderId,
             @RequestHeader("Authorization") String authHeader) {
@@ -74,10 +105,27 @@ public class OrdersController {
             @RequestParam(defaultValue = "1") Long current,
             @RequestParam(defaultValue = "10") Long size,
             @RequestParam(required = false) Integer status,
+            @RequestParam(defaultValue = "false") boolean history,
+            @RequestHeader("Authorization") String authHeader
+    ) {
+        Long userId = tokenUtil.getUserIdFromAuth(authHeader);
+        Page<OrderVO> page = ordersService.getUserOrders(userId, current, size, status, history);
+        return Result.success(page);
+    }
+
+    /**
+     * 游标分页获取我的订单列表（适用于无限滚动）
+     */
+    @GetMapping("/my/cursor")
+    public Result<CursorPage<OrderVO>> getMyOrdersByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(required = false) Integer status,
+            @RequestParam(defaultValue = "false") boolean history,
             @RequestHeader("Authorization") String authHeader
     ) {
         Long userId = tokenUtil.getUserIdFromAuth(authHeader);
-        Page<OrderVO> page = ordersService.getUserOrders(userId, current, size, status);
+        CursorPage<OrderVO> page = ordersService.getUserOrdersByCursor(userId, cursor, size, status, history);
         return Result.success(page);
     }
 
@@ -0,0 +1,19 @@
+package com.jingdezhen.tourism.order.feign;
+
+import com.jingdezhen.tourism.common.vo.Result;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+
+/**
+ * 商户服务Feign客户端
+ */
+@FeignClient(name = "merchant-service", path = "/merchant")
+public interface MerchantServiceClient {
+
+    /**
+     * 商户是否可接单（审核通过且账户正常）
+     */
+    @GetMapping("/{id}/available")
+    Result<Boolean> isAvailable(@PathVariable Long id);
+}
@@ -2,11 +2,16 @@ package com.jingdezhen.tourism.order.feign;
 
 import com.jingdezhen.tourism.common.entity.Product;
 import com.jingdezhen.tourism.common.vo.Result;
+import com.jingdezhen.tourism.common.vo.StockBatchResult;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
 
 /**
  * 商品服务Feign客户端
@@ -20,6 +25,12 @@ public interface ProductServiceClient {
     @GetMapping("/{id}")
     Result<Product> getProductById(@PathVariable Long id);
 
+    /**
+     * 批量获取商品（按传入顺序返回，不存在的商品跳过）
+     */
+    @GetMapping("/batch")
+    Result<List<Product>> getProductsByIds(@RequestParam("ids") List<Long> ids);
+
     /**
      * 更新商品（用于更新销量）
      */
@@ -38,6 +49,36 @@ public interface ProductServiceClient {
     @PutMapping("/stock/increase")
     Result<Void> increaseStock(@RequestBody StockRequest request);
 
+    /**
+     * 批量扣减库存（全部成功或全部不生效）
+     */
+    @PutMapping("/stock/decrease/batch")
+    Result<StockBatchResult> decreaseStockBatch(@RequestBody List<StockRequest> requests);
+
+    /**
+     * 批量增加库存（批量扣减的补偿）
+     */
+    @PutMapping("/stock/increase/batch")
+    Result<StockBatchResult> increaseStockBatch(@RequestBody List<StockRequest> requests);
+
+    /**
+     * 为订单预占库存（超时未支付自动归还），返回剩余库存
+     */
+    @PostMapping("/stock/hold")
+    Result<Integer> holdStock(@RequestBody StockRequest request);
+
+    /**
+     * 确认订单的库存预占，返回 COMMITTED / EXPIRED / RELEASED / NOT_FOUND
+     */
+    @PutMapping("/stock/hold/{orderNo}/commit")
+    Result<String> commitHold(@PathVariable("orderNo") String orderNo);
+
+    /**
+     * 归还订单的库存预占
+     */
+    @PutMapping("/stock/hold/{orderNo}/release")
+    Result<String> releaseHold(@PathVariable("orderNo") String orderNo);
+
     /**
      * 获取库存
      */
@@ -50,6 +91,7 @@ public interface ProductServiceClient {
     static class StockRequest {
         private Long productId;
         private Integer quantity;
+        private String orderNo;
 
         public Long getProductId() {
             return productId;
@@ -66,6 +108,14 @@ public interface ProductServiceClient {
         public void setQuantity(Integer quantity) {
             this.quantity = quantity;
         }
+
+        public String getOrderNo() {
+            return orderNo;
+        }
+
+        public void setOrderNo(String orderNo) {
+            this.orderNo = orderNo;
+        }
     }
 }
 
@@ -0,0 +1,38 @@
+package com.jingdezhen.tourism.order.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.jingdezhen.tourism.common.entity.MerchantSalesDaily;
+import com.jingdezhen.tourism.common.vo.MerchantSalesVO;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 商户日销售统计Mapper接口
+ */
+public interface MerchantSalesDailyMapper extends BaseMapper<MerchantSalesDaily> {
+
+    /**
+     * 累加一行统计增量，不存在时插入
+     */
+    int upsert(MerchantSalesDaily delta);
+
+    /**
+     * 删除一天的统计
+     */
+    int deleteByDate(@Param("statDate") LocalDate statDate);
+
+    /**
+     * 按订单表和归档表重新汇总一天的统计
+     *
+     * @param nextDate statDate 的下一天（时间范围右开）
+     */
+    int insertAggregated(@Param("statDate") LocalDate statDate, @Param("nextDate") LocalDate nextDate);
+
+    /**
+     * 按天汇总商户统计（可按产品过滤）
+     */
+    List<MerchantSalesVO> sumByDay(@Param("merchantId") Long merchantId, @Param("startDate") LocalDate startDate,
+                                   @Param("endDate") LocalDate endDate, @Param("productId") Long productId);
+}
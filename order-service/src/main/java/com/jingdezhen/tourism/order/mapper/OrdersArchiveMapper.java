@@ -0,0 +1,24 @@
+package com.jingdezhen.tourism.order.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.jingdezhen.tourism.common.entity.OrdersArchive;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 归档订单Mapper接口
+ */
+public interface OrdersArchiveMapper extends BaseMapper<OrdersArchive> {
+
+    /**
+     * 将指定订单复制到归档表（仅限指定状态，已归档的忽略）
+     */
+    int copyFromOrders(@Param("ids") List<Long> ids, @Param("statuses") Collection<Integer> statuses);
+
+    /**
+     * 从订单表物理删除已复制到归档表的订单
+     */
+    int deleteArchivedFromOrders(@Param("ids") List<Long> ids);
+}
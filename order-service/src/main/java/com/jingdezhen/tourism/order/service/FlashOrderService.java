@@ -0,0 +1,342 @@
+package com.jingdezhen.tourism.order.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.jingdezhen.tourism.common.dto.OrderCreateDTO;
+import com.jingdezhen.tourism.common.entity.Orders;
+import com.jingdezhen.tourism.common.entity.Product;
+import com.jingdezhen.tourism.common.exception.BusinessException;
+import com.jingdezhen.tourism.common.utils.SerialNoGenerator;
+import com.jingdezhen.tourism.common.vo.FlashTicketVO;
+import com.jingdezhen.tourism.common.vo.Result;
+import com.jingdezhen.tourism.order.feign.ProductServiceClient;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 抢购异步下单
+ * 商户开启抢购时从product-service划拨一部分库存到抢购库存池（order-service的Redis），
+ * 下单请求只执行一次Lua脚本：扣减库存池、登记用户、写入Redis Stream并生成排队凭证，
+ * 由 FlashOrderWorker 批量写入数据库，客户端凭凭证号轮询结果。
+ * 每个用户每个抢购产品限抢一次
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlashOrderService {
+
+    public static final String STREAM_KEY = "flash:order:stream";
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_SUCCESS = "SUCCESS";
+    public static final String STATUS_FAILED = "FAILED";
+
+    private static final String STOCK_KEY_PREFIX = "flash:stock:";
+    private static final String BUYERS_KEY_PREFIX = "flash:buyers:";
+    private static final String PRODUCT_KEY_PREFIX = "flash:product:";
+    private static final String TICKET_KEY_PREFIX = "flash:ticket:";
+
+    private static final long NOT_ARMED = -1;
+    private static final long DUPLICATE = -2;
+    private static final long SOLD_OUT = -3;
+
+    /**
+     * 抢购下单
+     * KEYS[1]=库存池 KEYS[2]=已抢用户 KEYS[3]=下单流 KEYS[4]=凭证
+     * ARGV[1]=数量 ARGV[2]=用户ID ARGV[3]=凭证号 ARGV[4]=下单请求JSON ARGV[5]=凭证有效期(秒)
+     * 返回剩余库存；-1 未开启抢购，-2 已抢过，-3 库存不足
+     */
+    private static final RedisScript<Long> INTAKE_SCRIPT = new DefaultRedisScript<>(
+        "local stock = redis.call('get', KEYS[1]) " +
+        "if not stock then return -1 end " +
+        "if redis.call('sismember', KEYS[2], ARGV[2]) == 1 then return -2 end " +
+        "local qty = tonumber(ARGV[1]) " +
+        "if tonumber(stock) < qty then return -3 end " +
+        "local remaining = redis.call('decrby', KEYS[1], qty) " +
+        "redis.call('sadd', KEYS[2], ARGV[2]) " +
+        "redis.call('xadd', KEYS[3], '*', 'payload', ARGV[4]) " +
+        "redis.call('hset', KEYS[4], 'userId', ARGV[2], 'status', 'PENDING') " +
+        "redis.call('expire', KEYS[4], ARGV[5]) " +
+        "return remaining",
+        Long.class);
+
+    /**
+     * 关闭抢购：取出库存池剩余数量并删除
+     */
+    private static final RedisScript<Long> DISARM_SCRIPT = new DefaultRedisScript<>(
+        "local stock = redis.call('get', KEYS[1]) " +
+        "if not stock then return -1 end " +
+        "redis.call('del', KEYS[1], KEYS[2]) " +
+        "return tonumber(stock)",
+        Long.class);
+
+    /**
+     * 下单失败时退还名额：凭证仍在排队时标记失败、移出已抢用户，库存池仍在时加回
+     * KEYS[1]=库存池 KEYS[2]=已抢用户 KEYS[3]=凭证
+     * ARGV[1]=数量 ARGV[2]=用户ID ARGV[3]=失败原因
+     * 返回 1 已加回库存池；0 抢购已关闭，需归还product-service；-1 凭证已处理过
+     */
+    private static final RedisScript<Long> REFUND_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('hget', KEYS[3], 'status') ~= 'PENDING' then return -1 end " +
+        "redis.call('hset', KEYS[3], 'status', 'FAILED', 'message', ARGV[3]) " +
+        "redis.call('srem', KEYS[2], ARGV[2]) " +
+        "if redis.call('exists', KEYS[1]) == 0 then return 0 end " +
+        "redis.call('incrby', KEYS[1], tonumber(ARGV[1])) " +
+        "return 1",
+        Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ProductServiceClient productServiceClient;
+    private final SerialNoGenerator serialNoGenerator;
+
+    @Value("${order.flash.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order.flash.ticket-ttl-seconds:3600}")
+    private long ticketTtlSeconds;
+
+    /**
+     * 开启抢购：从product-service划拨库存到抢购库存池（可多次追加）
+     */
+    public void arm(Long productId, Long merchantId, Integer quantity) {
+        checkEnabled();
+        if (quantity == null || quantity <= 0) {
+            throw new BusinessException("抢购库存必须大于0");
+        }
+        Result<Product> productResult = productServiceClient.getProductById(productId);
+        Product product = productResult.getData();
+        if (productResult.getCode() != 200 || product == null) {
+            throw new BusinessException("产品不存在");
+        }
+        if (!merchantId.equals(product.getMerchantId())) {
+            throw new BusinessException("无权操作该产品");
+        }
+        if (product.getStatus() != 1) {
+            throw new BusinessException("产品已下架");
+        }
+
+        ProductServiceClient.StockRequest request = new ProductServiceClient.StockRequest();
+        request.setProductId(productId);
+        request.setQuantity(quantity);
+        Result<Boolean> decreased = productServiceClient.decreaseStock(request);
+        if (decreased.getCode() != 200 || !Boolean.TRUE.equals(decreased.getData())) {
+            throw new BusinessException(decreased.getMessage() != null ? decreased.getMessage() : "库存不足");
+        }
+
+        try {
+            // 保存产品快照供写库时使用，写库过程不再调用product-service
+            Map<String, String> snapshot = new HashMap<>();
+            snapshot.put("merchantId", String.valueOf(product.getMerchantId()));
+            snapshot.put("price", product.getPrice().toPlainString());
+            snapshot.put("title", product.getTitle());
+            snapshot.put("image", product.getCoverImage() != null ? product.getCoverImage() : "");
+            stringRedisTemplate.opsForHash().putAll(PRODUCT_KEY_PREFIX + productId, snapshot);
+            Long pool = stringRedisTemplate.opsForValue().increment(STOCK_KEY_PREFIX + productId, quantity);
+            log.info("✅ 抢购已开启: productId={}, added={}, pool={}", productId, quantity, pool);
+        } catch (Exception e) {
+            log.error("❌ 开启抢购失败，归还库存: productId={}, quantity={}, error={}", productId, quantity, e.getMessage(), e);
+            productServiceClient.increaseStock(request);
+            throw new BusinessException("开启抢购失败，请稍后重试");
+        }
+    }
+
+    /**
+     * 关闭抢购：库存池剩余库存归还product-service
+     */
+    public int disarm(Long productId, Long merchantId) {
+        checkEnabled();
+        Result<Product> productResult = productServiceClient.getProductById(productId);
+        if (productResult.getCode() != 200 || productResult.getData() == null) {
+            throw new BusinessException("产品不存在");
+        }
+        if (!merchantId.equals(productResult.getData().getMerchantId())) {
+            throw new BusinessException("无权操作该产品");
+        }
+
+        Long remaining = stringRedisTemplate.execute(DISARM_SCRIPT,
+                Arrays.asList(STOCK_KEY_PREFIX + productId, BUYERS_KEY_PREFIX + productId));
+        if (remaining == null || remaining < 0) {
+            throw new BusinessException("该产品未开启抢购");
+        }
+        // 队列中尚未写库的请求仍需要产品快照，保留一段时间后自动过期
+        stringRedisTemplate.expire(PRODUCT_KEY_PREFIX + productId, 1, TimeUnit.DAYS);
+        if (remaining > 0) {
+            ProductServiceClient.StockRequest request = new ProductServiceClient.StockRequest();
+            request.setProductId(productId);
+            request.setQuantity(remaining.intValue());
+            productServiceClient.increaseStock(request);
+        }
+        log.info("✅ 抢购已关闭: productId={}, returned={}", productId, remaining);
+        return remaining.intValue();
+    }
+
+    /**
+     * 抢购下单，返回排队凭证号（同时作为订单号）
+     */
+    public String submit(OrderCreateDTO dto, Long userId) {
+        checkEnabled();
+        String ticketId = serialNoGenerator.nextNo();
+
+        FlashOrderRequest request = new FlashOrderRequest();
+        request.setTicketId(ticketId);
+        request.setUserId(userId);
+        request.setProductId(dto.getProductId());
+        request.setQuantity(dto.getQuantity());
+        request.setContactName(dto.getContactName());
+        request.setContactPhone(dto.getContactPhone());
+        request.setRemark(dto.getRemark());
+
+        List<String> keys = Arrays.asList(STOCK_KEY_PREFIX + dto.getProductId(), BUYERS_KEY_PREFIX + dto.getProductId(),
+                STREAM_KEY, TICKET_KEY_PREFIX + ticketId);
+        Long result = stringRedisTemplate.execute(INTAKE_SCRIPT, keys, String.valueOf(dto.getQuantity()),
+                String.valueOf(userId), ticketId, JSON.toJSONString(request), String.valueOf(ticketTtlSeconds));
+        if (result == null || result == NOT_ARMED) {
+            throw new BusinessException("该产品未开启抢购");
+        }
+        if (result == DUPLICATE) {
+            throw new BusinessException("您已参与过该产品的抢购");
+        }
+        if (result == SOLD_OUT) {
+            throw new BusinessException("已抢完");
+        }
+        return ticketId;
+    }
+
+    /**
+     * 查询排队结果
+     */
+    public FlashTicketVO getTicket(String ticketId, Long userId) {
+        Map<Object, Object> ticket = stringRedisTemplate.opsForHash().entries(TICKET_KEY_PREFIX + ticketId);
+        if (ticket.isEmpty() || !String.valueOf(userId).equals(ticket.get("userId"))) {
+            throw new BusinessException("排队凭证不存在或已过期");
+        }
+        FlashTicketVO vo = new FlashTicketVO();
+        vo.setTicketId(ticketId);
+        vo.setStatus((String) ticket.get("status"));
+        Object orderId = ticket.get("orderId");
+        vo.setOrderId(orderId != null ? Long.valueOf((String) orderId) : null);
+        vo.setMessage((String) ticket.get("message"));
+        return vo;
+    }
+
+    /**
+     * 读取抢购产品快照
+     */
+    public Map<Object, Object> getProductSnapshot(Long productId) {
+        return stringRedisTemplate.opsForHash().entries(PRODUCT_KEY_PREFIX + productId);
+    }
+
+    /**
+     * 更新凭证状态
+     */
+    public void completeTicket(String ticketId, String status, Long orderId, String message) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("status", status);
+        if (orderId != null) {
+            fields.put("orderId", String.valueOf(orderId));
+        }
+        if (message != null) {
+            fields.put("message", message);
+        }
+        stringRedisTemplate.opsForHash().putAll(TICKET_KEY_PREFIX + ticketId, fields);
+        stringRedisTemplate.expire(TICKET_KEY_PREFIX + ticketId, ticketTtlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 是否为抢购订单（只有抢购写库时 stockHeld 为0）
+     */
+    public static boolean isFlashOrder(Orders order) {
+        return Integer.valueOf(0).equals(order.getStockHeld());
+    }
+
+    /**
+     * 抢购订单取消后移出已抢用户，允许用户重新抢购。
+     * 在当前事务提交后执行，事务回滚时不移出；当前没有事务时立即执行
+     */
+    public void releaseBuyer(Long productId, Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeBuyer(productId, userId);
+                }
+            });
+        } else {
+            removeBuyer(productId, userId);
+        }
+    }
+
+    private void removeBuyer(Long productId, Long userId) {
+        try {
+            stringRedisTemplate.opsForSet().remove(BUYERS_KEY_PREFIX + productId, String.valueOf(userId));
+        } catch (Exception e) {
+            log.warn("⚠️ 移出抢购用户失败，用户暂时不能重新抢购: productId={}, userId={}, error={}",
+                    productId, userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 下单失败：凭证标记为失败，用户可重新抢购，名额退回库存池（抢购已关闭时归还product-service）。
+     * 只对排队中的凭证生效，重复调用不会重复退还
+     */
+    public void failTicket(FlashOrderRequest request, String message) {
+        List<String> keys = Arrays.asList(STOCK_KEY_PREFIX + request.getProductId(),
+                BUYERS_KEY_PREFIX + request.getProductId(), TICKET_KEY_PREFIX + request.getTicketId());
+        Long result = stringRedisTemplate.execute(REFUND_SCRIPT, keys, String.valueOf(request.getQuantity()),
+                String.valueOf(request.getUserId()), message);
+        if (result == null || result < 0) {
+            return;
+        }
+        stringRedisTemplate.expire(TICKET_KEY_PREFIX + request.getTicketId(), ticketTtlSeconds, TimeUnit.SECONDS);
+        if (result == 0) {
+            ProductServiceClient.StockRequest stockRequest = new ProductServiceClient.StockRequest();
+            stockRequest.setProductId(request.getProductId());
+            stockRequest.setQuantity(request.getQuantity());
+            try {
+                productServiceClient.increaseStock(stockRequest);
+            } catch (Exception e) {
+                log.error("❌ 抢购失败名额归还product-service失败，需人工处理: ticketId={}, productId={}, quantity={}, error={}",
+                        request.getTicketId(), request.getProductId(), request.getQuantity(), e.getMessage(), e);
+                return;
+            }
+        }
+        log.warn("⚠️ 抢购下单失败，名额已退还: ticketId={}, productId={}, quantity={}, message={}",
+                request.getTicketId(), request.getProductId(), request.getQuantity(), message);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private void checkEnabled() {
+        if (!enabled) {
+            throw new BusinessException("抢购下单未开启");
+        }
+    }
+
+    /**
+     * 排队中的下单请求
+     */
+    @Data
+    public static class FlashOrderRequest {
+        private String ticketId;
+        private Long userId;
+        private Long productId;
+        private Integer quantity;
+        private String contactName;
+        private String contactPhone;
+        private String remark;
+    }
+}
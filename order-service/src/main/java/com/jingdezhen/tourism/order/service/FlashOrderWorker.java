@@ -0,0 +1,365 @@
+package com.jingdezhen.tourism.order.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.batch.MybatisBatch;
+import com.jingdezhen.tourism.common.entity.Orders;
+import com.jingdezhen.tourism.order.mapper.OrdersMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 抢购订单写库
+ * 以消费组方式读取抢购下单流，每批用一次批量INSERT写入订单后更新凭证并确认消息。
+ * 批量写库失败时逐条写入，失败的消息不确认，留在本消费者的待确认列表中稍后重新处理，
+ * 投递次数达到上限后判定下单失败，凭证标记为失败并退还名额；
+ * 实例宕机遗留的消息空闲超过阈值后由其他实例认领。
+ * 凭证号即订单号，重复处理时按订单号去重
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlashOrderWorker {
+
+    private static final String GROUP = "flash-order-writer";
+    private static final long CLAIM_INTERVAL_MS = 30_000;
+    private static final Duration BLOCK_TIMEOUT = Duration.ofSeconds(2);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final FlashOrderService flashOrderService;
+    private final OrdersMapper ordersMapper;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final SalesRollupService salesRollupService;
+
+    @Value("${order.flash.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order.flash.batch-size:200}")
+    private int batchSize;
+
+    @Value("${order.flash.claim-idle-seconds:60}")
+    private long claimIdleSeconds;
+
+    @Value("${order.flash.max-deliveries:5}")
+    private long maxDeliveries;
+
+    private final String consumerName = ManagementFactory.getRuntimeMXBean().getName();
+
+    private volatile boolean running;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!enabled) {
+            return;
+        }
+        createGroup();
+        running = true;
+        Thread thread = new Thread(this::run, "flash-order-worker");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("✅ 抢购订单写库线程已启动: consumer={}, batchSize={}", consumerName, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+    }
+
+    private void run() {
+        // 启动时先处理本消费者上次未确认的消息
+        boolean drainPending = true;
+        long nextClaimTime = 0;
+        while (running) {
+            try {
+                if (System.currentTimeMillis() >= nextClaimTime) {
+                    nextClaimTime = System.currentTimeMillis() + CLAIM_INTERVAL_MS;
+                    if (claimIdle() > 0) {
+                        drainPending = true;
+                    }
+                }
+                List<MapRecord<String, Object, Object>> records = drainPending ? readPending() : readNew();
+                if (records == null || records.isEmpty()) {
+                    drainPending = false;
+                    continue;
+                }
+                if (process(records) > 0) {
+                    // 有消息留待重试，稍后从待确认列表重新读取
+                    drainPending = true;
+                    sleepQuietly();
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.error("❌ 抢购订单写库失败，稍后重试: error={}", e.getMessage(), e);
+                drainPending = true;
+                sleepQuietly();
+            }
+        }
+    }
+
+    private List<MapRecord<String, Object, Object>> readPending() {
+        return stringRedisTemplate.opsForStream().read(Consumer.from(GROUP, consumerName),
+                StreamReadOptions.empty().count(batchSize),
+                StreamOffset.create(FlashOrderService.STREAM_KEY, ReadOffset.from("0")));
+    }
+
+    private List<MapRecord<String, Object, Object>> readNew() {
+        return stringRedisTemplate.opsForStream().read(Consumer.from(GROUP, consumerName),
+                StreamReadOptions.empty().count(batchSize).block(BLOCK_TIMEOUT),
+                StreamOffset.create(FlashOrderService.STREAM_KEY, ReadOffset.lastConsumed()));
+    }
+
+    /**
+     * 认领其他消费者长时间未确认的消息，认领后进入本消费者的待确认列表
+     */
+    private int claimIdle() {
+        PendingMessages pending = stringRedisTemplate.opsForStream()
+                .pending(FlashOrderService.STREAM_KEY, GROUP, Range.unbounded(), batchSize);
+        Duration minIdle = Duration.ofSeconds(claimIdleSeconds);
+        RecordId[] ids = pending.stream()
+                .filter(message -> !consumerName.equals(message.getConsumerName()))
+                .filter(message -> message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0)
+                .map(PendingMessage::getId)
+                .toArray(RecordId[]::new);
+        if (ids.length == 0) {
+            return 0;
+        }
+        List<MapRecord<String, Object, Object>> claimed = stringRedisTemplate.opsForStream()
+                .claim(FlashOrderService.STREAM_KEY, GROUP, consumerName, minIdle, ids);
+        if (!claimed.isEmpty()) {
+            log.warn("⚠️ 认领超时未确认的抢购订单: count={}", claimed.size());
+        }
+        return claimed.size();
+    }
+
+    /**
+     * 处理一批下单请求
+     *
+     * @return 留待重试（未确认）的消息数
+     */
+    private int process(List<MapRecord<String, Object, Object>> records) {
+        Map<String, FlashOrderService.FlashOrderRequest> requests = new LinkedHashMap<>();
+        Map<String, RecordId> recordIds = new HashMap<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            Object payload = record.getValue().get("payload");
+            if (payload == null) {
+                continue;
+            }
+            try {
+                FlashOrderService.FlashOrderRequest request =
+                        JSON.parseObject((String) payload, FlashOrderService.FlashOrderRequest.class);
+                requests.put(request.getTicketId(), request);
+                recordIds.put(request.getTicketId(), record.getId());
+            } catch (Exception e) {
+                log.error("❌ 抢购下单消息无法解析，丢弃: recordId={}, payload={}", record.getId(), payload, e);
+            }
+        }
+
+        Set<RecordId> retrying = new HashSet<>();
+        int insertedCount = 0;
+        if (!requests.isEmpty()) {
+            // 重复投递的消息可能已经写入过
+            Set<String> existing = selectExistingOrderNos(requests.keySet());
+
+            Map<Long, Map<Object, Object>> snapshots = new HashMap<>();
+            List<Orders> orders = new ArrayList<>();
+            LocalDateTime now = LocalDateTime.now();
+            for (FlashOrderService.FlashOrderRequest request : requests.values()) {
+                if (existing.contains(request.getTicketId())) {
+                    continue;
+                }
+                Map<Object, Object> snapshot = snapshots.computeIfAbsent(request.getProductId(),
+                        flashOrderService::getProductSnapshot);
+                if (snapshot.isEmpty()) {
+                    flashOrderService.failTicket(request, "抢购已结束");
+                    continue;
+                }
+                orders.add(buildOrder(request, snapshot, now));
+            }
+
+            if (!orders.isEmpty()) {
+                List<Orders> inserted = orders;
+                try {
+                    new MybatisBatch<>(sqlSessionFactory, orders)
+                            .execute(new MybatisBatch.Method<Orders>(OrdersMapper.class).insert());
+                } catch (Exception e) {
+                    log.warn("⚠️ 抢购订单批量写库失败，逐条写入: count={}, error={}", orders.size(), e.getMessage());
+                    inserted = insertOneByOne(orders, requests, recordIds, records, retrying);
+                }
+                if (!inserted.isEmpty()) {
+                    salesRollupService.onCreated(inserted);
+                }
+                insertedCount = inserted.size();
+            }
+
+            ordersMapper.selectList(new LambdaQueryWrapper<Orders>()
+                            .select(Orders::getId, Orders::getOrderNo)
+                            .in(Orders::getOrderNo, requests.keySet()))
+                    .forEach(order -> flashOrderService.completeTicket(order.getOrderNo(),
+                            FlashOrderService.STATUS_SUCCESS, order.getId(), null));
+            log.info("✅ 抢购订单写库完成: received={}, inserted={}, retrying={}",
+                    records.size(), insertedCount, retrying.size());
+        }
+
+        RecordId[] ids = records.stream()
+                .map(MapRecord::getId)
+                .filter(id -> !retrying.contains(id))
+                .toArray(RecordId[]::new);
+        if (ids.length > 0) {
+            stringRedisTemplate.opsForStream().acknowledge(FlashOrderService.STREAM_KEY, GROUP, ids);
+            stringRedisTemplate.opsForStream().delete(FlashOrderService.STREAM_KEY, ids);
+        }
+        return retrying.size();
+    }
+
+    /**
+     * 批量写入失败时逐条写入，找出具体失败的订单：
+     * 投递次数未达上限的留在待确认列表重试，达到上限的判定为下单失败并退还名额
+     *
+     * @return 写入成功的订单
+     */
+    private List<Orders> insertOneByOne(List<Orders> orders, Map<String, FlashOrderService.FlashOrderRequest> requests,
+                                        Map<String, RecordId> recordIds, List<MapRecord<String, Object, Object>> records,
+                                        Set<RecordId> retrying) {
+        // 批量写入可能已部分生效
+        Set<String> existing = selectExistingOrderNos(orders.stream().map(Orders::getOrderNo).toList());
+        List<Orders> inserted = new ArrayList<>();
+        List<Orders> failed = new ArrayList<>();
+        for (Orders order : orders) {
+            if (existing.contains(order.getOrderNo())) {
+                continue;
+            }
+            try {
+                ordersMapper.insert(order);
+                inserted.add(order);
+            } catch (DuplicateKeyException e) {
+                log.debug("抢购订单已存在: orderNo={}", order.getOrderNo());
+            } catch (Exception e) {
+                log.error("❌ 抢购订单写库失败: orderNo={}, error={}", order.getOrderNo(), e.getMessage());
+                failed.add(order);
+            }
+        }
+        if (failed.isEmpty()) {
+            return inserted;
+        }
+
+        Map<RecordId, Long> deliveryCounts = deliveryCounts(records);
+        for (Orders order : failed) {
+            RecordId recordId = recordIds.get(order.getOrderNo());
+            long deliveries = deliveryCounts.getOrDefault(recordId, 1L);
+            if (deliveries < maxDeliveries) {
+                retrying.add(recordId);
+                continue;
+            }
+            log.error("❌ 抢购订单多次写库失败，放弃: orderNo={}, deliveries={}", order.getOrderNo(), deliveries);
+            flashOrderService.failTicket(requests.get(order.getOrderNo()), "下单失败，请重新抢购");
+        }
+        return inserted;
+    }
+
+    /**
+     * 本消费者待确认列表中这批消息的投递次数
+     */
+    private Map<RecordId, Long> deliveryCounts(List<MapRecord<String, Object, Object>> records) {
+        Range<String> range = Range.closed(records.get(0).getId().getValue(),
+                records.get(records.size() - 1).getId().getValue());
+        PendingMessages pending = stringRedisTemplate.opsForStream().pending(FlashOrderService.STREAM_KEY,
+                Consumer.from(GROUP, consumerName), range, records.size());
+        Map<RecordId, Long> counts = new HashMap<>();
+        pending.forEach(message -> counts.put(message.getId(), message.getTotalDeliveryCount()));
+        return counts;
+    }
+
+    private Set<String> selectExistingOrderNos(Collection<String> orderNos) {
+        return ordersMapper.selectList(new LambdaQueryWrapper<Orders>()
+                        .select(Orders::getOrderNo)
+                        .in(Orders::getOrderNo, orderNos))
+                .stream()
+                .map(Orders::getOrderNo)
+                .collect(Collectors.toSet());
+    }
+
+    private Orders buildOrder(FlashOrderService.FlashOrderRequest request, Map<Object, Object> snapshot,
+                              LocalDateTime now) {
+        BigDecimal price = new BigDecimal((String) snapshot.get("price"));
+        String image = (String) snapshot.get("image");
+
+        Orders order = new Orders();
+        order.setOrderNo(request.getTicketId());
+        order.setUserId(request.getUserId());
+        order.setMerchantId(Long.valueOf((String) snapshot.get("merchantId")));
+        order.setProductId(request.getProductId());
+        order.setProductTitle((String) snapshot.get("title"));
+        order.setProductImage(image == null || image.isEmpty() ? null : image);
+        order.setQuantity(request.getQuantity());
+        // 库存在开启抢购时已从product-service直接扣减
+        order.setStockHeld(0);
+        order.setPrice(price);
+        order.setTotalAmount(price.multiply(new BigDecimal(request.getQuantity())));
+        order.setStatus(OrderStateMachine.PENDING_PAYMENT);
+        order.setContactName(request.getContactName());
+        order.setContactPhone(request.getContactPhone());
+        order.setRemark(request.getRemark());
+        order.setCreateTime(now);
+        return order;
+    }
+
+    /**
+     * 创建消费组（流不存在时一并创建），已存在时忽略
+     */
+    private void createGroup() {
+        byte[] key = FlashOrderService.STREAM_KEY.getBytes(StandardCharsets.UTF_8);
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection ->
+                    connection.streamCommands().xGroupCreate(key, GROUP, ReadOffset.from("0"), true));
+        } catch (Exception e) {
+            String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            if (message == null || !message.contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
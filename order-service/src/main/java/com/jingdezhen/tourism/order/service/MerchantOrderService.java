@@ -2,6 +2,7 @@ package com.jingdezhen.tourism.order.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jingdezhen.tourism.common.entity.Orders;
+import com.jingdezhen.tourism.common.vo.CursorPage;
 
 /**
  * 商户订单Service
@@ -10,8 +11,17 @@ public interface MerchantOrderService {
 
     /**
      * 获取商户订单列表
+     *
+     * @param history true时查询已归档的历史订单
      */
-    Page<Orders> getMerchantOrders(Long merchantId, Long current, Long size, Integer status, String orderNo, String contactPhone);
+    Page<Orders> getMerchantOrders(Long merchantId, Long current, Long size, Integer status, String orderNo, String contactPhone, boolean history);
+
+    /**
+     * 游标分页获取商户订单列表（不查询总数）
+     *
+     * @param history true时查询已归档的历史订单
+     */
+    CursorPage<Orders> getMerchantOrdersByCursor(Long merchantId, String cursor, Integer size, Integer status, String orderNo, String contactPhone, boolean history);
 
     /**
      * 获取订单详情
@@ -0,0 +1,54 @@
+package com.jingdezhen.tourism.order.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jingdezhen.tourism.common.vo.Result;
+import com.jingdezhen.tourism.order.feign.MerchantServiceClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * 商户接单状态查询
+ * 商户被禁用属于低频操作，结果在本地缓存较短时间，下单链路绝大多数情况下不需要远程调用；
+ * merchant-service 不可用时放行（产品上下架状态仍由product-service把关），且不缓存该结果
+ */
+@Slf4j
+@Service
+public class MerchantStatusService {
+
+    private final MerchantServiceClient merchantServiceClient;
+    private final Cache<Long, Boolean> cache;
+
+    public MerchantStatusService(MerchantServiceClient merchantServiceClient,
+                                 @Value("${order.merchant-status.expire-seconds:30}") long expireSeconds) {
+        this.merchantServiceClient = merchantServiceClient;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(Duration.ofSeconds(expireSeconds))
+                .build();
+    }
+
+    /**
+     * 商户是否可接单
+     */
+    public boolean isAvailable(Long merchantId) {
+        Boolean cached = cache.getIfPresent(merchantId);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            Result<Boolean> result = merchantServiceClient.isAvailable(merchantId);
+            if (result.getCode() == 200 && result.getData() != null) {
+                cache.put(merchantId, result.getData());
+                return result.getData();
+            }
+            log.warn("⚠️ 查询商户状态失败，默认放行: merchantId={}, message={}", merchantId, result.getMessage());
+        } catch (Exception e) {
+            log.warn("⚠️ 查询商户状态失败，默认放行: merchantId={}, error={}", merchantId, e.getMessage());
+        }
+        return true;
+    }
+}
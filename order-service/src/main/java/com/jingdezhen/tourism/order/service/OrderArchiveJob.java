@@ -0,0 +1,137 @@
+package com.jingdezhen.tourism.order.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.jingdezhen.tourism.common.entity.Orders;
+import com.jingdezhen.tourism.common.utils.RedisLockUtil;
+import com.jingdezhen.tourism.order.mapper.OrdersArchiveMapper;
+import com.jingdezhen.tourism.order.mapper.OrdersMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单归档
+ * 定时将已结束（已完成、已取消、已退款）且最后更新时间超过保留期的订单按主键分批迁入 orders_archive，
+ * 每批在一个事务内 INSERT ... SELECT 后删除，批次之间短暂停顿以减少对线上写入的影响。
+ * orders 只保留进行中和近期的订单，索引和热数据保持在较小规模；历史订单通过 history 参数查询归档表。
+ * 多实例时只有持锁实例执行
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderArchiveJob {
+
+    private static final String LOCK_KEY = "order:archive";
+
+    /**
+     * 可归档的终态
+     */
+    public static final Set<Integer> ARCHIVABLE_STATUSES = Set.of(
+            OrderStateMachine.COMPLETED, OrderStateMachine.CANCELED, OrderStateMachine.REFUNDED);
+
+    private final OrdersMapper ordersMapper;
+    private final OrdersArchiveMapper ordersArchiveMapper;
+    private final RedisLockUtil redisLockUtil;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${order.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${order.archive.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${order.archive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${order.archive.interval-minutes:60}")
+    private long intervalMinutes;
+
+    @Value("${order.archive.batch-pause-ms:100}")
+    private long batchPauseMs;
+
+    private ScheduledExecutorService scheduler;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "order-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::archive, 5, intervalMinutes, TimeUnit.MINUTES);
+        log.info("✅ 订单归档任务已启动: retentionDays={}, batchSize={}", retentionDays, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 归档一轮：按主键从小到大扫描到末尾
+     */
+    public void archive() {
+        String lockValue = redisLockUtil.tryLock(LOCK_KEY, 1, 3600);
+        if (lockValue == null) {
+            return;
+        }
+        LocalDateTime before = LocalDateTime.now().minusDays(retentionDays);
+        long lastId = 0;
+        int archived = 0;
+        try {
+            List<Orders> batch;
+            do {
+                batch = ordersMapper.selectList(new LambdaQueryWrapper<Orders>()
+                        .select(Orders::getId)
+                        .gt(Orders::getId, lastId)
+                        .lt(Orders::getUpdateTime, before)
+                        .in(Orders::getStatus, ARCHIVABLE_STATUSES)
+                        .orderByAsc(Orders::getId)
+                        .last("LIMIT " + batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+                archived += archiveBatch(batch.stream().map(Orders::getId).toList());
+                Thread.sleep(batchPauseMs);
+            } while (batch.size() == batchSize);
+            if (archived > 0) {
+                log.info("✅ 订单归档完成: archived={}, before={}", archived, before);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("❌ 订单归档失败: lastId={}, error={}", lastId, e.getMessage(), e);
+        } finally {
+            redisLockUtil.releaseLock(LOCK_KEY, lockValue);
+        }
+    }
+
+    /**
+     * 迁移一批订单：复制时再次校验状态，删除时只删除已复制到归档表的行
+     */
+    private int archiveBatch(List<Long> ids) {
+        Integer deleted = transactionTemplate.execute(status -> {
+            ordersArchiveMapper.copyFromOrders(ids, ARCHIVABLE_STATUSES);
+            return ordersArchiveMapper.deleteArchivedFromOrders(ids);
+        });
+        return deleted != null ? deleted : 0;
+    }
+}
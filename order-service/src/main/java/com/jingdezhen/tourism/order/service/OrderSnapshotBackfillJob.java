@@ -0,0 +1,116 @@
+package com.jingdezhen.tourism.order.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.jingdezhen.tourism.common.entity.Orders;
+import com.jingdezhen.tourism.common.entity.Product;
+import com.jingdezhen.tourism.common.utils.RedisLockUtil;
+import com.jingdezhen.tourism.common.vo.Result;
+import com.jingdezhen.tourism.order.feign.ProductServiceClient;
+import com.jingdezhen.tourism.order.mapper.OrdersMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 历史订单产品快照回填
+ * 启动后在后台按主键分批扫描未保存快照的订单，每批批量查询产品后按产品分组更新；
+ * 更新条件带 product_title IS NULL，可重复执行，多实例时只有持锁实例执行
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderSnapshotBackfillJob {
+
+    private static final String LOCK_KEY = "order:snapshot:backfill";
+
+    private final OrdersMapper ordersMapper;
+    private final ProductServiceClient productServiceClient;
+    private final RedisLockUtil redisLockUtil;
+
+    @Value("${order.snapshot-backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${order.snapshot-backfill.batch-size:200}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::backfill, "order-snapshot-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 回填全部历史订单
+     */
+    public void backfill() {
+        String lockValue = redisLockUtil.tryLock(LOCK_KEY, 1, 3600);
+        if (lockValue == null) {
+            return;
+        }
+        long lastId = 0;
+        int updated = 0;
+        try {
+            List<Orders> batch;
+            do {
+                batch = ordersMapper.selectList(new LambdaQueryWrapper<Orders>()
+                        .select(Orders::getId, Orders::getProductId)
+                        .isNull(Orders::getProductTitle)
+                        .gt(Orders::getId, lastId)
+                        .orderByAsc(Orders::getId)
+                        .last("LIMIT " + batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+                updated += backfillBatch(batch);
+            } while (batch.size() == batchSize);
+            if (updated > 0) {
+                log.info("✅ 订单产品快照回填完成: updated={}", updated);
+            }
+        } catch (Exception e) {
+            log.error("❌ 订单产品快照回填失败，下次启动时继续: lastId={}, error={}", lastId, e.getMessage(), e);
+        } finally {
+            redisLockUtil.releaseLock(LOCK_KEY, lockValue);
+        }
+    }
+
+    private int backfillBatch(List<Orders> batch) {
+        Map<Long, List<Long>> orderIdsByProduct = batch.stream().collect(Collectors.groupingBy(
+                Orders::getProductId, Collectors.mapping(Orders::getId, Collectors.toList())));
+
+        Result<List<Product>> productResult = productServiceClient.getProductsByIds(List.copyOf(orderIdsByProduct.keySet()));
+        if (productResult.getCode() != 200 || productResult.getData() == null) {
+            throw new IllegalStateException("查询产品信息失败: " + productResult.getMessage());
+        }
+        Map<Long, Product> products = productResult.getData().stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        // 同一产品的订单一次更新
+        int updated = 0;
+        for (Map.Entry<Long, List<Long>> entry : orderIdsByProduct.entrySet()) {
+            Product product = products.get(entry.getKey());
+            if (product == null) {
+                continue;
+            }
+            updated += ordersMapper.update(null, new LambdaUpdateWrapper<Orders>()
+                    .set(Orders::getProductTitle, product.getTitle())
+                    .set(Orders::getProductImage, product.getCoverImage())
+                    .in(Orders::getId, entry.getValue())
+                    .isNull(Orders::getProductTitle));
+        }
+        return updated;
+    }
+}
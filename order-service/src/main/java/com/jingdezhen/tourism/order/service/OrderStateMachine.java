@@ -0,0 +1,95 @@
+package com.jingdezhen.tourism.order.service;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.jingdezhen.tourism.common.entity.Orders;
+import com.jingdezhen.tourism.common.exception.BusinessException;
+import com.jingdezhen.tourism.order.mapper.OrdersMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 订单状态机
+ * 状态流转用一条带条件的UPDATE完成：WHERE id = ? AND status IN (...) AND user_id/merchant_id = ?，
+ * 以影响行数判断是否成功，只写入变更的列。用户与商户并发操作同一订单时只有一方能成功，不会互相覆盖。
+ * 流转成功后登记商户销售统计，在订单事务提交后写入
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderStateMachine {
+
+    public static final int PENDING_PAYMENT = 0;
+    public static final int PAID = 1;
+    public static final int COMPLETED = 2;
+    public static final int CANCELED = 3;
+    public static final int REFUNDING = 4;
+    public static final int REFUNDED = 5;
+
+    private final OrdersMapper ordersMapper;
+    private final SalesRollupService salesRollupService;
+
+    /**
+     * 执行状态流转，失败时抛出业务异常
+     *
+     * @param orderId    订单ID
+     * @param operator   操作人（用于校验订单归属）
+     * @param from       允许的当前状态
+     * @param to         目标状态
+     * @param changes    同时更新的其他列（如支付时间），可为null
+     * @param stateError 当前状态不允许流转时的提示
+     */
+    public void transit(Long orderId, Operator operator, Set<Integer> from, int to,
+                        Consumer<LambdaUpdateWrapper<Orders>> changes, String stateError) {
+        LambdaUpdateWrapper<Orders> wrapper = new LambdaUpdateWrapper<Orders>()
+                .set(Orders::getStatus, to)
+                .set(Orders::getUpdateTime, LocalDateTime.now())
+                .eq(Orders::getId, orderId)
+                .in(Orders::getStatus, from)
+                .eq(operator.userId() != null, Orders::getUserId, operator.userId())
+                .eq(operator.merchantId() != null, Orders::getMerchantId, operator.merchantId());
+        if (changes != null) {
+            changes.accept(wrapper);
+        }
+        if (ordersMapper.update(null, wrapper) > 0) {
+            salesRollupService.onTransition(orderId, from, to);
+            log.debug("✅ 订单状态流转成功: orderId={}, from={}, to={}", orderId, from, to);
+            return;
+        }
+
+        // 未更新到数据时再查询一次，给出准确的失败原因
+        Orders order = ordersMapper.selectById(orderId);
+        if (order == null) {
+            throw new BusinessException("订单不存在");
+        }
+        if ((operator.userId() != null && !operator.userId().equals(order.getUserId()))
+                || (operator.merchantId() != null && !operator.merchantId().equals(order.getMerchantId()))) {
+            throw new BusinessException("无权操作此订单");
+        }
+        log.warn("⚠️ 订单状态流转失败: orderId={}, currentStatus={}, from={}, to={}",
+                orderId, order.getStatus(), from, to);
+        throw new BusinessException(stateError);
+    }
+
+    /**
+     * 操作人：用户、商户或系统（系统操作不校验归属）
+     */
+    public record Operator(Long userId, Long merchantId) {
+
+        public static Operator user(Long userId) {
+            return new Operator(userId, null);
+        }
+
+        public static Operator merchant(Long merchantId) {
+            return new Operator(null, merchantId);
+        }
+
+        public static Operator system() {
+            return new Operator(null, null);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.jingdezhen.tourism.order.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.jingdezhen.tourism.common.entity.Orders;
+import com.jingdezhen.tourism.common.exception.BusinessException;
+import com.jingdezhen.tourism.common.utils.RedisLockUtil;
+import com.jingdezhen.tourism.order.mapper.OrdersMapper;
+import com.jingdezhen.tourism.order.service.OrderStateMachine.Operator;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 超时未支付订单取消
+ * 预占订单：库存预占到期后由product-service归还，这里定时把创建超过预占时长仍待支付的订单流转为已取消，
+ * 并发送订单取消消息（预占已归还时消费端不会重复恢复库存）；
+ * 抢购订单：创建超过支付时限仍待支付的订单流转为已取消，取消消息由消费端直接恢复库存，并移出已抢用户。
+ * 启用预占前的订单（stockHeld为空）不处理。与用户支付并发时只有一方能流转成功。
+ * 多实例时只有持锁实例执行
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderTimeoutCancelJob {
+
+    private static final String LOCK_KEY = "order:timeout-cancel";
+
+    private final OrdersMapper ordersMapper;
+    private final OrderStateMachine orderStateMachine;
+    private final MessageProducerService messageProducerService;
+    private final StockHoldService stockHoldService;
+    private final FlashOrderService flashOrderService;
+    private final RedisLockUtil redisLockUtil;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${order.stock-hold.timeout-cancel.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 不小于product-service的 stock.hold.ttl-seconds
+     */
+    @Value("${order.stock-hold.ttl-seconds:900}")
+    private long holdTtlSeconds;
+
+    /**
+     * 抢购订单支付时限
+     */
+    @Value("${order.flash.pay-timeout-seconds:900}")
+    private long flashPayTimeoutSeconds;
+
+    @Value("${order.stock-hold.timeout-cancel.interval-seconds:60}")
+    private long intervalSeconds;
+
+    @Value("${order.stock-hold.timeout-cancel.batch-size:200}")
+    private int batchSize;
+
+    private ScheduledExecutorService scheduler;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "order-timeout-cancel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::cancelExpired, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        log.info("✅ 超时订单取消任务已启动: holdTtl={}s, flashPayTimeout={}s, interval={}s",
+                holdTtlSeconds, flashPayTimeoutSeconds, intervalSeconds);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 取消一轮：预占订单和抢购订单各按主键从小到大扫描到末尾
+     */
+    public void cancelExpired() {
+        String lockValue = redisLockUtil.tryLock(LOCK_KEY, 1, 600);
+        if (lockValue == null) {
+            return;
+        }
+        try {
+            cancelExpired(1, LocalDateTime.now().minusSeconds(holdTtlSeconds));
+            cancelExpired(0, LocalDateTime.now().minusSeconds(flashPayTimeoutSeconds));
+        } finally {
+            redisLockUtil.releaseLock(LOCK_KEY, lockValue);
+        }
+    }
+
+    /**
+     * 取消指定类型中创建早于 before 的待支付订单
+     *
+     * @param stockHeld 1-预占订单，0-抢购订单
+     */
+    private void cancelExpired(int stockHeld, LocalDateTime before) {
+        long lastId = 0;
+        int canceled = 0;
+        try {
+            List<Orders> batch;
+            do {
+                batch = ordersMapper.selectList(new LambdaQueryWrapper<Orders>()
+                        .select(Orders::getId, Orders::getOrderNo, Orders::getUserId, Orders::getProductId,
+                                Orders::getQuantity, Orders::getStockHeld)
+                        .eq(Orders::getStatus, OrderStateMachine.PENDING_PAYMENT)
+                        .eq(Orders::getStockHeld, stockHeld)
+                        .lt(Orders::getCreateTime, before)
+                        .gt(Orders::getId, lastId)
+                        .orderByAsc(Orders::getId)
+                        .last("LIMIT " + batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+                for (Orders order : batch) {
+                    if (cancel(order)) {
+                        canceled++;
+                    }
+                }
+            } while (batch.size() == batchSize);
+            if (canceled > 0) {
+                log.info("✅ 超时未支付订单已取消: stockHeld={}, canceled={}, before={}", stockHeld, canceled, before);
+            }
+        } catch (Exception e) {
+            log.error("❌ 取消超时订单失败: stockHeld={}, lastId={}, error={}", stockHeld, lastId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 取消一个订单，订单状态已变化（如用户刚支付）时跳过
+     */
+    private boolean cancel(Orders order) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                orderStateMachine.transit(order.getId(), Operator.system(), Set.of(OrderStateMachine.PENDING_PAYMENT),
+                        OrderStateMachine.CANCELED, w -> w.set(Orders::getCancelTime, LocalDateTime.now()), "订单状态已变化");
+                messageProducerService.sendOrderCanceledMessage(order.getId(), order.getOrderNo(),
+                        order.getProductId(), order.getQuantity(), stockHoldService.isHeld(order));
+                if (FlashOrderService.isFlashOrder(order)) {
+                    flashOrderService.releaseBuyer(order.getProductId(), order.getUserId());
+                }
+            });
+            return true;
+        } catch (BusinessException e) {
+            log.debug("订单状态已变化，跳过超时取消: orderId={}", order.getId());
+            return false;
+        }
+    }
+}
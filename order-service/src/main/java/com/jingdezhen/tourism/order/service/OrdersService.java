@@ -2,6 +2,7 @@ package com.jingdezhen.tourism.order.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jingdezhen.tourism.common.dto.OrderCreateDTO;
+import com.jingdezhen.tourism.common.vo.CursorPage;
 import com.jingdezhen.tourism.common.vo.OrderVO;
 
 /**
@@ -26,8 +27,17 @@ public interface OrdersService {
 
     /**
      * 获取用户订单列表
+     *
+     * @param history true时查询已归档的历史订单
      */
-    Page<OrderVO> getUserOrders(Long userId, Long current, Long size, Integer status);
+    Page<OrderVO> getUserOrders(Long userId, Long current, Long size, Integer status, boolean history);
+
+    /**
+     * 游标分页获取用户订单列表（不查询总数）
+     *
+     * @param history true时查询已归档的历史订单
+     */
+    CursorPage<OrderVO> getUserOrdersByCursor(Long userId, String cursor, Integer size, Integer status, boolean history);
 
     /**
      * 取消订单
@@ -40,7 +50,7 @@ public interface OrdersService {
     void finishOrder(Long orderId, Long userId);
 
     /**
-     * 获取订单实体（供其他服务调用）
+     * 获取订单实体（供其他服务调用，包括已归档订单）
      */
     com.jingdezhen.tourism.common.entity.Orders getOrderEntity(Long orderId);
 }
@@ -0,0 +1,120 @@
+package com.jingdezhen.tourism.order.service;
+
+import com.jingdezhen.tourism.common.exception.BusinessException;
+import com.jingdezhen.tourism.common.utils.RedisLockUtil;
+import com.jingdezhen.tourism.order.mapper.MerchantSalesDailyMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 商户销售统计重算
+ * 增量在订单事务提交后写入，写入失败或提交后进程退出时增量会丢失；这里定时按订单表和归档表
+ * 重新汇总最近几天的统计并整天替换。增量只会写入当天，因此只重算今天之前的日期，不与增量写入并发。
+ * 多实例时只有持锁实例执行
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SalesRollupRebuildJob {
+
+    private static final String LOCK_KEY = "order:sales-rollup:rebuild";
+    private static final int MAX_REBUILD_DAYS = 366;
+
+    private final MerchantSalesDailyMapper merchantSalesDailyMapper;
+    private final RedisLockUtil redisLockUtil;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${order.sales-rollup.rebuild.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 每次重算截至昨天的天数
+     */
+    @Value("${order.sales-rollup.rebuild.days:2}")
+    private int days;
+
+    @Value("${order.sales-rollup.rebuild.interval-hours:6}")
+    private long intervalHours;
+
+    private ScheduledExecutorService scheduler;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sales-rollup-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::rebuildRecent, 10, intervalHours * 60, TimeUnit.MINUTES);
+        log.info("✅ 销售统计重算任务已启动: days={}, interval={}h", days, intervalHours);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 重算截至昨天的最近几天
+     */
+    public void rebuildRecent() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        try {
+            rebuild(yesterday.minusDays(days - 1L), yesterday);
+        } catch (Exception e) {
+            log.error("❌ 销售统计重算失败: error={}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 重算日期区间（含首尾）的统计，每天一个事务
+     *
+     * @return 重算的天数，未获得锁时返回0
+     */
+    public int rebuild(LocalDate startDate, LocalDate endDate) {
+        if (startDate.isAfter(endDate)) {
+            throw new BusinessException("开始日期不能晚于结束日期");
+        }
+        if (!endDate.isBefore(LocalDate.now())) {
+            throw new BusinessException("只能重算今天之前的统计");
+        }
+        if (startDate.plusDays(MAX_REBUILD_DAYS).isBefore(endDate)) {
+            throw new BusinessException("重算区间不能超过" + MAX_REBUILD_DAYS + "天");
+        }
+        String lockValue = redisLockUtil.tryLock(LOCK_KEY, 1, 3600);
+        if (lockValue == null) {
+            return 0;
+        }
+        int rebuilt = 0;
+        try {
+            for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+                LocalDate statDate = date;
+                int rows = transactionTemplate.execute(status -> {
+                    merchantSalesDailyMapper.deleteByDate(statDate);
+                    return merchantSalesDailyMapper.insertAggregated(statDate, statDate.plusDays(1));
+                });
+                rebuilt++;
+                log.info("✅ 销售统计已重算: statDate={}, rows={}", statDate, rows);
+            }
+        } finally {
+            redisLockUtil.releaseLock(LOCK_KEY, lockValue);
+        }
+        return rebuilt;
+    }
+}
@@ -0,0 +1,176 @@
+package com.jingdezhen.tourism.order.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.jingdezhen.tourism.common.entity.MerchantSalesDaily;
+import com.jingdezhen.tourism.common.entity.Orders;
+import com.jingdezhen.tourism.common.exception.BusinessException;
+import com.jingdezhen.tourism.common.vo.MerchantDashboardVO;
+import com.jingdezhen.tourism.common.vo.MerchantSalesVO;
+import com.jingdezhen.tourism.order.mapper.MerchantSalesDailyMapper;
+import com.jingdezhen.tourism.order.mapper.OrdersMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 商户销售统计
+ * 订单创建和状态流转时按（商户, 产品, 日期）累加计数，在订单事务提交后用独立的短事务写入，
+ * 订单事务不持有统计行的锁，统计写入失败（如死锁）只记录日志，不会回滚已提交的订单，
+ * 丢失的增量由 {@link SalesRollupRebuildJob} 按订单表重算补齐；
+ * 看板直接读取预聚合的日统计行，查询量与天数成正比，不再扫描订单表
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SalesRollupService {
+
+    private static final int MAX_DASHBOARD_DAYS = 366;
+
+    private final MerchantSalesDailyMapper merchantSalesDailyMapper;
+    private final OrdersMapper ordersMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate requiresNew;
+
+    @PostConstruct
+    public void init() {
+        // 提交后回调中仍绑定着原事务的连接，需要新事务才能提交统计
+        requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 订单创建：同一商户产品的订单合并为一次累加
+     */
+    public void onCreated(List<Orders> orders) {
+        LocalDate today = LocalDate.now();
+        Map<String, MerchantSalesDaily> deltas = new LinkedHashMap<>();
+        for (Orders order : orders) {
+            MerchantSalesDaily delta = deltas.computeIfAbsent(order.getMerchantId() + ":" + order.getProductId(),
+                    key -> emptyDelta(order.getMerchantId(), order.getProductId(), today));
+            delta.setOrderCount(delta.getOrderCount() + 1);
+        }
+        deltas.values().forEach(this::apply);
+    }
+
+    /**
+     * 订单状态流转成功后累加对应计数
+     *
+     * @param from 流转前允许的状态
+     * @param to   目标状态
+     */
+    public void onTransition(Long orderId, Set<Integer> from, int to) {
+        boolean refund = to == OrderStateMachine.REFUNDING
+                || (to == OrderStateMachine.REFUNDED && !from.contains(OrderStateMachine.REFUNDING));
+        if (to != OrderStateMachine.PAID && to != OrderStateMachine.CANCELED && !refund) {
+            return;
+        }
+        Orders order = ordersMapper.selectOne(new LambdaQueryWrapper<Orders>()
+                .select(Orders::getMerchantId, Orders::getProductId, Orders::getQuantity, Orders::getTotalAmount)
+                .eq(Orders::getId, orderId));
+        if (order == null) {
+            return;
+        }
+        MerchantSalesDaily delta = emptyDelta(order.getMerchantId(), order.getProductId(), LocalDate.now());
+        if (to == OrderStateMachine.PAID) {
+            delta.setPaidCount(1);
+            delta.setQuantity(order.getQuantity());
+            delta.setGmv(order.getTotalAmount());
+        } else if (to == OrderStateMachine.CANCELED) {
+            delta.setCancelCount(1);
+        } else {
+            delta.setRefundCount(1);
+            delta.setRefundAmount(order.getTotalAmount());
+        }
+        apply(delta);
+    }
+
+    /**
+     * 商户经营看板
+     */
+    public MerchantDashboardVO getDashboard(Long merchantId, LocalDate startDate, LocalDate endDate, Long productId) {
+        if (endDate == null) {
+            endDate = LocalDate.now();
+        }
+        if (startDate == null) {
+            startDate = endDate.minusDays(29);
+        }
+        if (startDate.isAfter(endDate)) {
+            throw new BusinessException("开始日期不能晚于结束日期");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) >= MAX_DASHBOARD_DAYS) {
+            throw new BusinessException("查询区间不能超过" + MAX_DASHBOARD_DAYS + "天");
+        }
+
+        List<MerchantSalesVO> daily = merchantSalesDailyMapper.sumByDay(merchantId, startDate, endDate, productId);
+        MerchantSalesVO total = new MerchantSalesVO();
+        total.setOrderCount(daily.stream().mapToLong(MerchantSalesVO::getOrderCount).sum());
+        total.setPaidCount(daily.stream().mapToLong(MerchantSalesVO::getPaidCount).sum());
+        total.setQuantity(daily.stream().mapToLong(MerchantSalesVO::getQuantity).sum());
+        total.setGmv(daily.stream().map(MerchantSalesVO::getGmv).reduce(BigDecimal.ZERO, BigDecimal::add));
+        total.setCancelCount(daily.stream().mapToLong(MerchantSalesVO::getCancelCount).sum());
+        total.setRefundCount(daily.stream().mapToLong(MerchantSalesVO::getRefundCount).sum());
+        total.setRefundAmount(daily.stream().map(MerchantSalesVO::getRefundAmount).reduce(BigDecimal.ZERO, BigDecimal::add));
+
+        MerchantDashboardVO vo = new MerchantDashboardVO();
+        vo.setStartDate(startDate);
+        vo.setEndDate(endDate);
+        vo.setTotal(total);
+        vo.setDaily(daily);
+        return vo;
+    }
+
+    /**
+     * 在当前事务提交后写入统计；当前没有事务时立即写入。订单事务回滚时不写入
+     */
+    private void apply(MerchantSalesDaily delta) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    upsert(delta);
+                }
+            });
+        } else {
+            upsert(delta);
+        }
+    }
+
+    private void upsert(MerchantSalesDaily delta) {
+        try {
+            requiresNew.executeWithoutResult(status -> merchantSalesDailyMapper.upsert(delta));
+        } catch (Exception e) {
+            log.warn("⚠️ 更新销售统计失败，将由重算任务补齐: merchantId={}, productId={}, error={}",
+                    delta.getMerchantId(), delta.getProductId(), e.getMessage());
+        }
+    }
+
+    private static MerchantSalesDaily emptyDelta(Long merchantId, Long productId, LocalDate statDate) {
+        MerchantSalesDaily delta = new MerchantSalesDaily();
+        delta.setMerchantId(merchantId);
+        delta.setProductId(productId);
+        delta.setStatDate(statDate);
+        delta.setOrderCount(0);
+        delta.setPaidCount(0);
+        delta.setQuantity(0);
+        delta.setGmv(BigDecimal.ZERO);
+        delta.setCancelCount(0);
+        delta.setRefundCount(0);
+        delta.setRefundAmount(BigDecimal.ZERO);
+        return delta;
+    }
+}
@@ -0,0 +1,86 @@
+package com.jingdezhen.tourism.order.service;
+
+import com.jingdezhen.tourism.common.entity.Orders;
+import com.jingdezhen.tourism.common.exception.BusinessException;
+import com.jingdezhen.tourism.common.vo.Result;
+import com.jingdezhen.tourism.order.feign.ProductServiceClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * 库存预占服务
+ * 下单时按订单号预占库存，支付时确认；超时未支付的预占由product-service自动归还，订单由 OrderTimeoutCancelJob 取消。
+ * 订单的 stockHeld 标记下单时是否预占，未预占的订单（抢购订单、启用预占前的订单）没有预占记录
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockHoldService {
+
+    private static final String HOLD_EXPIRED = "EXPIRED";
+    private static final String HOLD_RELEASED = "RELEASED";
+    private static final String HOLD_NOT_FOUND = "NOT_FOUND";
+
+    private final ProductServiceClient productServiceClient;
+
+    /**
+     * 为订单预占库存，失败时抛出业务异常
+     */
+    public void hold(String orderNo, Long productId, Integer quantity) {
+        ProductServiceClient.StockRequest request = new ProductServiceClient.StockRequest();
+        request.setOrderNo(orderNo);
+        request.setProductId(productId);
+        request.setQuantity(quantity);
+        Result<Integer> result = productServiceClient.holdStock(request);
+        if (result.getCode() != 200 || result.getData() == null) {
+            log.warn("⚠️ 库存预占失败: orderNo={}, productId={}, quantity={}, message={}",
+                orderNo, productId, quantity, result.getMessage());
+            throw new BusinessException(result.getMessage() != null ? result.getMessage() : "库存不足，请稍后重试");
+        }
+        log.info("✅ 库存预占成功: orderNo={}, productId={}, quantity={}, 剩余库存={}",
+            orderNo, productId, quantity, result.getData());
+    }
+
+    /**
+     * 确认订单的库存预占
+     *
+     * @return false 表示预占已超时或已归还，订单不能再支付
+     */
+    public boolean commit(Orders order) {
+        String orderNo = order.getOrderNo();
+        Result<String> result = productServiceClient.commitHold(orderNo);
+        if (result.getCode() != 200 || result.getData() == null) {
+            log.error("❌ 确认库存预占失败: orderNo={}, message={}", orderNo, result.getMessage());
+            throw new BusinessException("库存确认失败，请稍后重试");
+        }
+        String status = result.getData();
+        if (HOLD_NOT_FOUND.equals(status)) {
+            // 未预占的订单下单时已直接扣减库存；预占订单找不到记录说明处理标记已过期，预占早已归还
+            if (isHeld(order)) {
+                log.warn("⚠️ 订单的库存预占记录不存在: orderNo={}, createTime={}", orderNo, order.getCreateTime());
+                return false;
+            }
+            return true;
+        }
+        return !HOLD_EXPIRED.equals(status) && !HOLD_RELEASED.equals(status);
+    }
+
+    /**
+     * 订单下单时是否按订单号预占了库存
+     */
+    public boolean isHeld(Orders order) {
+        return Integer.valueOf(1).equals(order.getStockHeld());
+    }
+
+    /**
+     * 归还订单的库存预占（用于下单失败时补偿，失败时等待超时自动归还）
+     */
+    public void release(String orderNo) {
+        try {
+            productServiceClient.releaseHold(orderNo);
+        } catch (Exception e) {
+            log.error("❌ 归还库存预占失败，等待超时自动归还: orderNo={}, error={}", orderNo, e.getMessage(), e);
+        }
+    }
+}
@@ -3,15 +3,26 @@ package com.jingdezhen.tourism.order.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jingdezhen.tourism.common.entity.Orders;
+import com.jingdezhen.tourism.common.entity.OrdersArchive;
 import com.jingdezhen.tourism.common.exception.BusinessException;
+import com.jingdezhen.tourism.common.utils.PageCursor;
+import com.jingdezhen.tourism.common.vo.CursorPage;
+import com.jingdezhen.tourism.order.mapper.OrdersArchiveMapper;
 import com.jingdezhen.tourism.order.mapper.OrdersMapper;
 import com.jingdezhen.tourism.order.service.MerchantOrderService;
+import com.jingdezhen.tourism.order.service.MessageProducerService;
+import com.jingdezhen.tourism.order.service.OrderStateMachine;
+import com.jingdezhen.tourism.order.service.OrderStateMachine.Operator;
+import com.jingdezhen.tourism.order.service.StockHoldService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 /**
  * 商户订单Service实现类
@@ -20,32 +31,84 @@ import java.time.LocalDateTime;
 @RequiredArgsConstructor
 public class MerchantOrderServiceImpl implements MerchantOrderService {
 
+    private static final int ORDER_NO_LENGTH = 20;
+    private static final int PHONE_LENGTH = 11;
+
     private final OrdersMapper ordersMapper;
+    private final OrdersArchiveMapper ordersArchiveMapper;
+    private final StockHoldService stockHoldService;
+    private final MessageProducerService messageProducerService;
+    private final OrderStateMachine orderStateMachine;
+
+    @Override
+    public Page<Orders> getMerchantOrders(Long merchantId, Long current, Long size, Integer status, String orderNo, String contactPhone, boolean history) {
+        if (history) {
+            LambdaQueryWrapper<OrdersArchive> wrapper = merchantOrdersWrapper(merchantId, status, orderNo, contactPhone);
+            wrapper.orderByDesc(Orders::getCreateTime);
+            Page<OrdersArchive> archivePage = ordersArchiveMapper.selectPage(new Page<>(current, size), wrapper);
+            Page<Orders> page = new Page<>(archivePage.getCurrent(), archivePage.getSize(), archivePage.getTotal());
+            page.setRecords(new ArrayList<>(archivePage.getRecords()));
+            return page;
+        }
+        LambdaQueryWrapper<Orders> wrapper = merchantOrdersWrapper(merchantId, status, orderNo, contactPhone);
+        wrapper.orderByDesc(Orders::getCreateTime);
+        
+        Page<Orders> page = new Page<>(current, size);
+        return ordersMapper.selectPage(page, wrapper);
+    }
 
     @Override
-    public Page<Orders> getMerchantOrders(Long merchantId, Long current, Long size, Integer status, String orderNo, String contactPhone) {
-        LambdaQueryWrapper<Orders> wrapper = new LambdaQueryWrapper<>();
+    public CursorPage<Orders> getMerchantOrdersByCursor(Long merchantId, String cursor, Integer size, Integer status, String orderNo, String contactPhone, boolean history) {
+        int pageSize = PageCursor.normalizeSize(size);
+        List<Orders> rows;
+        if (history) {
+            LambdaQueryWrapper<OrdersArchive> wrapper = merchantOrdersWrapper(merchantId, status, orderNo, contactPhone);
+            PageCursor.seek(wrapper, Orders::getCreateTime, Orders::getId, cursor, pageSize);
+            rows = new ArrayList<>(ordersArchiveMapper.selectList(wrapper));
+        } else {
+            LambdaQueryWrapper<Orders> wrapper = merchantOrdersWrapper(merchantId, status, orderNo, contactPhone);
+            PageCursor.seek(wrapper, Orders::getCreateTime, Orders::getId, cursor, pageSize);
+            rows = ordersMapper.selectList(wrapper);
+        }
+        return CursorPage.of(rows, pageSize, Orders::getCreateTime, Orders::getId);
+    }
+
+    /**
+     * 商户订单查询条件（订单表与归档表通用）
+     */
+    private <T extends Orders> LambdaQueryWrapper<T> merchantOrdersWrapper(Long merchantId, Integer status, String orderNo, String contactPhone) {
+        LambdaQueryWrapper<T> wrapper = new LambdaQueryWrapper<>();
         wrapper.eq(Orders::getMerchantId, merchantId);
         
         if (status != null) {
             wrapper.eq(Orders::getStatus, status);
         }
+        // 订单号：完整时精确匹配，否则前缀匹配；手机号：完整时精确匹配，否则按尾号匹配反转列的前缀。均可走索引
         if (StringUtils.hasText(orderNo)) {
-            wrapper.like(Orders::getOrderNo, orderNo);
+            String no = orderNo.trim();
+            if (no.length() >= ORDER_NO_LENGTH) {
+                wrapper.eq(Orders::getOrderNo, no);
+            } else {
+                wrapper.likeRight(Orders::getOrderNo, no);
+            }
         }
         if (StringUtils.hasText(contactPhone)) {
-            wrapper.like(Orders::getContactPhone, contactPhone);
+            String phone = contactPhone.trim();
+            if (phone.length() >= PHONE_LENGTH) {
+                wrapper.eq(Orders::getContactPhone, phone);
+            } else {
+                wrapper.likeRight(Orders::getContactPhoneRev, new StringBuilder(phone).reverse().toString());
+            }
         }
-        
-        wrapper.orderByDesc(Orders::getCreateTime);
-        
-        Page<Orders> page = new Page<>(current, size);
-        return ordersMapper.selectPage(page, wrapper);
+        return wrapper;
     }
 
     @Override
     public Orders getOrderDetail(Long orderId, Long merchantId) {
         Orders order = ordersMapper.selectById(orderId);
+        if (order == null) {
+            order = ordersArchiveMapper.selectById(orderId);
+        }
         if (order == null) {
             throw new BusinessException("订单不存在");
         }
@@ -56,7 +119,7 @@ public class MerchantOrderServiceImpl implements MerchantOrderService {
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
+    @Transactional(rollbackFor = Exception.class, noRollbackFor = BusinessException.class)
     public void confirmOrder(Long orderId, Long merchantId) {
         Orders order = getOrderDetail(orderId, merchantId);
         
@@ -64,23 +127,22 @@ public class MerchantOrderServiceImpl implements MerchantOrderService {
             throw new BusinessException("订单状态不正确，无法确认");
         }
         
-        order.setStatus(1);
-        order.setPayTime(LocalDateTime.now());
-        ordersMapper.updateById(order);
+        // 确认库存预占；预占已超时归还时订单随之取消（业务异常不回滚，保留取消状态）
+        if (!stockHoldService.commit(order)) {
+            orderStateMachine.transit(orderId, Operator.merchant(merchantId), Set.of(OrderStateMachine.PENDING_PAYMENT),
+                OrderStateMachine.CANCELED, w -> w.set(Orders::getCancelTime, LocalDateTime.now()), "订单状态不正确，无法确认");
+            throw new BusinessException("订单已超时未支付，已自动取消");
+        }
+        
+        orderStateMachine.transit(orderId, Operator.merchant(merchantId), Set.of(OrderStateMachine.PENDING_PAYMENT),
+            OrderStateMachine.PAID, w -> w.set(Orders::getPayTime, LocalDateTime.now()), "订单状态不正确，无法确认");
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void completeOrder(Long orderId, Long merchantId) {
-        Orders order = getOrderDetail(orderId, merchantId);
-        
-        if (order.getStatus() != 1) {
-            throw new BusinessException("订单状态不正确，无法完成");
-        }
-        
-        order.setStatus(2);
-        order.setCompleteTime(LocalDateTime.now());
-        ordersMapper.updateById(order);
+        orderStateMachine.transit(orderId, Operator.merchant(merchantId), Set.of(OrderStateMachine.PAID),
+            OrderStateMachine.COMPLETED, w -> w.set(Orders::getCompleteTime, LocalDateTime.now()), "订单状态不正确，无法完成");
     }
 
     @Override
@@ -91,26 +153,30 @@ public class MerchantOrderServiceImpl implements MerchantOrderService {
         if (order.getStatus() != 0 && order.getStatus() != 1) {
             throw new BusinessException("订单状态不正确，无法取消");
         }
+        boolean unpaid = order.getStatus() == 0;
         
-        order.setStatus(3);
-        order.setCancelTime(LocalDateTime.now());
-        if (StringUtils.hasText(reason)) {
-            order.setRemark((order.getRemark() != null ? order.getRemark() + "\n" : "") + "取消原因：" + reason);
+        // 以读取到的状态为条件流转，期间用户已支付或取消时本次操作失败
+        orderStateMachine.transit(orderId, Operator.merchant(merchantId), Set.of(order.getStatus()),
+            OrderStateMachine.CANCELED, w -> {
+                w.set(Orders::getCancelTime, LocalDateTime.now());
+                if (StringUtils.hasText(reason)) {
+                    w.setSql("remark = IF(remark IS NULL OR remark = '', {0}, CONCAT(remark, '\n', {0}))",
+                        "取消原因：" + reason);
+                }
+            }, "订单状态不正确，无法取消");
+        
+        // 待支付订单取消时归还库存预占
+        if (unpaid) {
+            messageProducerService.sendOrderCanceledMessage(order.getId(), order.getOrderNo(), 
+                order.getProductId(), order.getQuantity(), stockHoldService.isHeld(order));
         }
-        ordersMapper.updateById(order);
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void refundOrder(Long orderId, Long merchantId) {
-        Orders order = getOrderDetail(orderId, merchantId);
-        
-        if (order.getStatus() != 1) {
-            throw new BusinessException("订单状态不正确，无法退款");
-        }
-        
-        order.setStatus(4);
-        ordersMapper.updateById(order);
+        orderStateMachine.transit(orderId, Operator.merchant(merchantId), Set.of(OrderStateMachine.PAID),
+            OrderStateMachine.REFUNDING, null, "订单状态不正确，无法退款");
     }
 }
 
@@ -4,15 +4,26 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jingdezhen.tourism.common.dto.OrderCreateDTO;
 import com.jingdezhen.tourism.common.entity.Orders;
+import com.jingdezhen.tourism.common.entity.OrdersArchive;
 import com.jingdezhen.tourism.common.entity.Product;
 import com.jingdezhen.tourism.common.exception.BusinessException;
+import com.jingdezhen.tourism.common.utils.PageCursor;
 import com.jingdezhen.tourism.common.utils.RedisLockUtil;
+import com.jingdezhen.tourism.common.utils.SerialNoGenerator;
+import com.jingdezhen.tourism.common.vo.CursorPage;
 import com.jingdezhen.tourism.common.vo.OrderVO;
 import com.jingdezhen.tourism.common.vo.Result;
 import com.jingdezhen.tourism.order.feign.ProductServiceClient;
+import com.jingdezhen.tourism.order.mapper.OrdersArchiveMapper;
 import com.jingdezhen.tourism.order.mapper.OrdersMapper;
+import com.jingdezhen.tourism.order.service.FlashOrderService;
+import com.jingdezhen.tourism.order.service.MerchantStatusService;
 import com.jingdezhen.tourism.order.service.MessageProducerService;
+import com.jingdezhen.tourism.order.service.OrderStateMachine;
+import com.jingdezhen.tourism.order.service.OrderStateMachine.Operator;
 import com.jingdezhen.tourism.order.service.OrdersService;
+import com.jingdezhen.tourism.order.service.SalesRollupService;
+import com.jingdezhen.tourism.order.service.StockHoldService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -21,10 +32,14 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 /**
@@ -36,9 +51,17 @@ import java.util.stream.Collectors;
 public class OrdersServiceImpl implements OrdersService {
 
     private final OrdersMapper ordersMapper;
+    private final OrdersArchiveMapper ordersArchiveMapper;
     private final ProductServiceClient productServiceClient;
     private final RedisLockUtil redisLockUtil;
+    private final SerialNoGenerator serialNoGenerator;
     private final MessageProducerService messageProducerService;
+    private final StockHoldService stockHoldService;
+    private final MerchantStatusService merchantStatusService;
+    private final OrderStateMachine orderStateMachine;
+    private final SalesRollupService salesRollupService;
+    private final FlashOrderService flashOrderService;
+    private final ExecutorService orderFanOutExecutor;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -49,44 +72,42 @@ public class OrdersServiceImpl implements OrdersService {
         // 使用分布式锁，防止同一用户重复下单
         String lockKey = "order:create:" + userId + ":" + dto.getProductId();
         return redisLockUtil.executeWithLock(lockKey, 3, 10, () -> {
-            // 查询产品信息（通过Feign调用product-service）
-            Result<Product> productResult = productServiceClient.getProductById(dto.getProductId());
-            if (productResult.getCode() != 200 || productResult.getData() == null) {
-                throw new BusinessException("产品不存在");
-            }
-            Product product = productResult.getData();
-            
-            if (product.getStatus() != 1) {
-                throw new BusinessException("产品已下架");
-            }
-            
-            // 检查库存（通过Feign调用product-service）
-            Result<Integer> stockResult = productServiceClient.getStock(dto.getProductId());
-            Integer currentStock = stockResult.getData();
-            if (currentStock == null || currentStock < dto.getQuantity()) {
-                log.warn("⚠️ 库存不足: productId={}, 当前库存={}, 需要数量={}", 
-                    dto.getProductId(), currentStock, dto.getQuantity());
-                throw new BusinessException("库存不足，当前库存：" + (currentStock != null ? currentStock : 0));
-            }
-            
-            // 扣减库存（通过Feign调用product-service）
-            ProductServiceClient.StockRequest stockRequest = new ProductServiceClient.StockRequest();
-            stockRequest.setProductId(dto.getProductId());
-            stockRequest.setQuantity(dto.getQuantity());
-            Result<Boolean> decreaseResult = productServiceClient.decreaseStock(stockRequest);
-            if (decreaseResult.getCode() != 200 || !Boolean.TRUE.equals(decreaseResult.getData())) {
-                log.warn("⚠️ 扣减库存失败: productId={}, quantity={}", dto.getProductId(), dto.getQuantity());
-                throw new BusinessException("库存不足，请稍后重试");
+            // 查询产品信息与按订单号预占库存互不依赖，并发调用product-service，缩短锁持有时间；
+            // 预占本身是原子扣减，库存不足时直接失败，无需事先查询库存
+            String orderNo = serialNoGenerator.nextNo();
+            CompletableFuture<Product> productFuture = CompletableFuture.supplyAsync(
+                    () -> loadProduct(dto.getProductId()), orderFanOutExecutor);
+            CompletableFuture<Void> holdFuture = CompletableFuture.runAsync(
+                    () -> stockHoldService.hold(orderNo, dto.getProductId(), dto.getQuantity()), orderFanOutExecutor);
+
+            Product product;
+            try {
+                product = await(productFuture);
+                if (product.getStatus() != 1) {
+                    throw new BusinessException("产品已下架");
+                }
+                if (!merchantStatusService.isAvailable(product.getMerchantId())) {
+                    throw new BusinessException("商户暂停营业，暂不能下单");
+                }
+                await(holdFuture);
+            } catch (RuntimeException e) {
+                // 校验未通过时，已成功的预占需要归还（超时未支付也会自动归还）
+                holdFuture.thenRun(() -> stockHoldService.release(orderNo));
+                throw e;
             }
             
             try {
                 // 创建订单
                 Orders order = new Orders();
-                order.setOrderNo(generateOrderNo());
+                order.setOrderNo(orderNo);
                 order.setUserId(userId);
                 order.setMerchantId(product.getMerchantId());
                 order.setProductId(product.getId());
+                // 保存下单时的产品快照，订单列表与详情直接读取，不再关联查询product-service
+                order.setProductTitle(product.getTitle());
+                order.setProductImage(product.getCoverImage());
                 order.setQuantity(dto.getQuantity());
+                order.setStockHeld(1);
                 order.setPrice(product.getPrice());
                 order.setTotalAmount(product.getPrice().multiply(new BigDecimal(dto.getQuantity())));
                 order.setStatus(0); // 待支付
@@ -96,6 +117,7 @@ public class OrdersServiceImpl implements OrdersService {
                 order.setCreateTime(LocalDateTime.now());
 
                 ordersMapper.insert(order);
+                salesRollupService.onCreated(List.of(order));
                 
                 log.info("✅ 订单创建成功: orderId={}, orderNo={}, productId={}, quantity={}", 
                     order.getId(), order.getOrderNo(), dto.getProductId(), dto.getQuantity());
@@ -103,27 +125,22 @@ public class OrdersServiceImpl implements OrdersService {
                 // 返回订单信息
                 OrderVO vo = new OrderVO();
                 BeanUtils.copyProperties(order, vo);
-                vo.setProductTitle(product.getTitle());
-                vo.setProductImage(product.getCoverImage());
                 vo.setStatusText(getStatusText(order.getStatus()));
                 vo.setCanReview(false);
 
                 return vo;
             } catch (Exception e) {
-                // 如果订单创建失败，恢复库存
-                log.error("❌ 订单创建失败，恢复库存: productId={}, quantity={}, error={}", 
-                    dto.getProductId(), dto.getQuantity(), e.getMessage(), e);
-                ProductServiceClient.StockRequest increaseRequest = new ProductServiceClient.StockRequest();
-                increaseRequest.setProductId(dto.getProductId());
-                increaseRequest.setQuantity(dto.getQuantity());
-                productServiceClient.increaseStock(increaseRequest);
+                // 如果订单创建失败，归还库存预占
+                log.error("❌ 订单创建失败，归还库存预占: orderNo={}, productId={}, quantity={}, error={}", 
+                    orderNo, dto.getProductId(), dto.getQuantity(), e.getMessage(), e);
+                stockHoldService.release(orderNo);
                 throw e;
             }
         });
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
+    @Transactional(rollbackFor = Exception.class, noRollbackFor = BusinessException.class)
     public void payOrder(Long orderId, Long userId) {
         Orders order = ordersMapper.selectById(orderId);
         if (order == null) {
@@ -136,10 +153,17 @@ public class OrdersServiceImpl implements OrdersService {
             throw new BusinessException("订单状态错误");
         }
 
-        // 更新订单状态为已支付
-        order.setStatus(1);
-        order.setPayTime(LocalDateTime.now());
-        ordersMapper.updateById(order);
+        // 确认库存预占；预占已超时归还时订单随之取消（业务异常不回滚，保留取消状态）
+        if (!stockHoldService.commit(order)) {
+            orderStateMachine.transit(orderId, Operator.user(userId), Set.of(OrderStateMachine.PENDING_PAYMENT),
+                OrderStateMachine.CANCELED, w -> w.set(Orders::getCancelTime, LocalDateTime.now()), "订单状态错误");
+            log.warn("⚠️ 订单超时未支付，库存已释放: orderId={}, orderNo={}", orderId, order.getOrderNo());
+            throw new BusinessException("订单已超时未支付，已自动取消，请重新下单");
+        }
+
+        // 更新订单状态为已支付（与用户取消、商户操作并发时只有一方成功）
+        orderStateMachine.transit(orderId, Operator.user(userId), Set.of(OrderStateMachine.PENDING_PAYMENT),
+            OrderStateMachine.PAID, w -> w.set(Orders::getPayTime, LocalDateTime.now()), "订单状态错误");
 
         // 发送订单支付消息，异步更新产品销量
         messageProducerService.sendOrderPaidMessage(order.getId(), order.getProductId(), order.getQuantity());
@@ -147,7 +171,7 @@ public class OrdersServiceImpl implements OrdersService {
 
     @Override
     public OrderVO getOrderDetail(Long orderId, Long userId) {
-        Orders order = ordersMapper.selectById(orderId);
+        Orders order = selectWithArchive(orderId);
         if (order == null) {
             throw new BusinessException("订单不存在");
         }
@@ -155,65 +179,18 @@ public class OrdersServiceImpl implements OrdersService {
             throw new BusinessException("无权查看此订单");
         }
 
-        // 查询产品信息（通过Feign调用product-service）
-        Result<Product> productResult = productServiceClient.getProductById(order.getProductId());
-        Product product = productResult.getCode() == 200 ? productResult.getData() : null;
-
-        OrderVO vo = new OrderVO();
-        BeanUtils.copyProperties(order, vo);
-        if (product != null) {
-            vo.setProductTitle(product.getTitle());
-            vo.setProductImage(product.getCoverImage());
-        }
-        vo.setStatusText(getStatusText(order.getStatus()));
-        vo.setCanReview(order.getStatus() == 2);
-
-        return vo;
+        return toOrderVOs(List.of(order)).get(0);
     }
 
     @Override
-    public Page<OrderVO> getUserOrders(Long userId, Long current, Long size, Integer status) {
-        Page<Orders> page = new Page<>(current, size);
-        LambdaQueryWrapper<Orders> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(Orders::getUserId, userId);
-        if (status != null) {
-            wrapper.eq(Orders::getStatus, status);
-        }
-        wrapper.orderByDesc(Orders::getCreateTime);
-
-        Page<Orders> ordersPage = ordersMapper.selectPage(page, wrapper);
-
-        // 查询所有订单对应的产品信息（批量调用product-service）
-        List<Long> productIds = ordersPage.getRecords().stream()
-                .map(Orders::getProductId)
-                .distinct()
-                .collect(Collectors.toList());
-
-        Map<Long, Product> productMap = new HashMap<>();
-        for (Long productId : productIds) {
-            Result<Product> productResult = productServiceClient.getProductById(productId);
-            if (productResult.getCode() == 200 && productResult.getData() != null) {
-                productMap.put(productId, productResult.getData());
-            }
-        }
+    public Page<OrderVO> getUserOrders(Long userId, Long current, Long size, Integer status, boolean history) {
+        Page<? extends Orders> ordersPage = history
+                ? ordersArchiveMapper.selectPage(new Page<>(current, size),
+                        this.<OrdersArchive>userOrdersWrapper(userId, status).orderByDesc(Orders::getCreateTime))
+                : ordersMapper.selectPage(new Page<>(current, size),
+                        this.<Orders>userOrdersWrapper(userId, status).orderByDesc(Orders::getCreateTime));
 
-        // 转换为VO
-        Map<Long, Product> finalProductMap = productMap;
-        List<OrderVO> voList = ordersPage.getRecords().stream().map(order -> {
-            OrderVO vo = new OrderVO();
-            BeanUtils.copyProperties(order, vo);
-            
-            Product product = finalProductMap.get(order.getProductId());
-            if (product != null) {
-                vo.setProductTitle(product.getTitle());
-                vo.setProductImage(product.getCoverImage());
-            }
-            
-            vo.setStatusText(getStatusText(order.getStatus()));
-            vo.setCanReview(order.getStatus() == 2);
-            
-            return vo;
-        }).collect(Collectors.toList());
+        List<OrderVO> voList = toOrderVOs(new ArrayList<>(ordersPage.getRecords()));
 
         Page<OrderVO> voPage = new Page<>(ordersPage.getCurrent(), ordersPage.getSize(), ordersPage.getTotal());
         voPage.setRecords(voList);
@@ -221,28 +198,51 @@ public class OrdersServiceImpl implements OrdersService {
         return voPage;
     }
 
+    @Override
+    public CursorPage<OrderVO> getUserOrdersByCursor(Long userId, String cursor, Integer size, Integer status, boolean history) {
+        int pageSize = PageCursor.normalizeSize(size);
+        List<Orders> rows;
+        if (history) {
+            LambdaQueryWrapper<OrdersArchive> wrapper = userOrdersWrapper(userId, status);
+            PageCursor.seek(wrapper, Orders::getCreateTime, Orders::getId, cursor, pageSize);
+            rows = new ArrayList<>(ordersArchiveMapper.selectList(wrapper));
+        } else {
+            LambdaQueryWrapper<Orders> wrapper = userOrdersWrapper(userId, status);
+            PageCursor.seek(wrapper, Orders::getCreateTime, Orders::getId, cursor, pageSize);
+            rows = ordersMapper.selectList(wrapper);
+        }
+
+        CursorPage<Orders> page = CursorPage.of(rows, pageSize, Orders::getCreateTime, Orders::getId);
+        return page.convert(this::toOrderVOs);
+    }
+
+    /**
+     * 用户订单查询条件（订单表与归档表通用）
+     */
+    private <T extends Orders> LambdaQueryWrapper<T> userOrdersWrapper(Long userId, Integer status) {
+        LambdaQueryWrapper<T> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(Orders::getUserId, userId);
+        if (status != null) {
+            wrapper.eq(Orders::getStatus, status);
+        }
+        return wrapper;
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void cancelOrder(Long orderId, Long userId) {
         log.info("❌ 开始取消订单: orderId={}, userId={}", orderId, userId);
         
+        orderStateMachine.transit(orderId, Operator.user(userId), Set.of(OrderStateMachine.PENDING_PAYMENT),
+            OrderStateMachine.CANCELED, w -> w.set(Orders::getCancelTime, LocalDateTime.now()), "只有待支付订单可以取消");
         Orders order = ordersMapper.selectById(orderId);
-        if (order == null) {
-            throw new BusinessException("订单不存在");
-        }
-        if (!order.getUserId().equals(userId)) {
-            throw new BusinessException("无权操作此订单");
-        }
-        if (order.getStatus() != 0) {
-            throw new BusinessException("只有待支付订单可以取消");
-        }
-
-        // 更新订单状态
-        order.setStatus(3); // 已取消
-        ordersMapper.updateById(order);
 
-        // 发送订单取消消息，异步恢复库存
-        messageProducerService.sendOrderCanceledMessage(order.getId(), order.getProductId(), order.getQuantity());
+        // 发送订单取消消息，异步归还库存预占
+        messageProducerService.sendOrderCanceledMessage(order.getId(), order.getOrderNo(), 
+            order.getProductId(), order.getQuantity(), stockHoldService.isHeld(order));
+        if (FlashOrderService.isFlashOrder(order)) {
+            flashOrderService.releaseBuyer(order.getProductId(), order.getUserId());
+        }
         
         log.info("✅ 订单取消成功: orderId={}, productId={}, quantity={}", 
             orderId, order.getProductId(), order.getQuantity());
@@ -251,26 +251,13 @@ public class OrdersServiceImpl implements OrdersService {
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void finishOrder(Long orderId, Long userId) {
-        Orders order = ordersMapper.selectById(orderId);
-        if (order == null) {
-            throw new BusinessException("订单不存在");
-        }
-        if (!order.getUserId().equals(userId)) {
-            throw new BusinessException("无权操作此订单");
-        }
-        if (order.getStatus() != 1) {
-            throw new BusinessException("只有已支付订单可以完成");
-        }
-
-        // 更新订单状态
-        order.setStatus(2); // 已完成
-        order.setCompleteTime(LocalDateTime.now());
-        ordersMapper.updateById(order);
+        orderStateMachine.transit(orderId, Operator.user(userId), Set.of(OrderStateMachine.PAID),
+            OrderStateMachine.COMPLETED, w -> w.set(Orders::getCompleteTime, LocalDateTime.now()), "只有已支付订单可以完成");
     }
 
     @Override
     public Orders getOrderEntity(Long orderId) {
-        Orders order = ordersMapper.selectById(orderId);
+        Orders order = selectWithArchive(orderId);
         if (order == null) {
             throw new BusinessException("订单不存在");
         }
@@ -278,12 +265,78 @@ public class OrdersServiceImpl implements OrdersService {
     }
 
     /**
-     * 生成订单号
+     * 按ID查询订单，订单表中不存在时再查归档表
+     */
+    private Orders selectWithArchive(Long orderId) {
+        Orders order = ordersMapper.selectById(orderId);
+        return order != null ? order : ordersArchiveMapper.selectById(orderId);
+    }
+
+    /**
+     * 查询产品信息（通过Feign调用product-service）
+     */
+    private Product loadProduct(Long productId) {
+        Result<Product> productResult = productServiceClient.getProductById(productId);
+        if (productResult.getCode() != 200 || productResult.getData() == null) {
+            throw new BusinessException("产品不存在");
+        }
+        return productResult.getData();
+    }
+
+    /**
+     * 等待并发调用结果，还原其中抛出的异常
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 转换为VO（产品信息取自订单快照）
      */
-    private String generateOrderNo() {
-        String timeStr = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        String randomStr = String.format("%06d", (int) (Math.random() * 1000000));
-        return timeStr + randomStr;
+    private List<OrderVO> toOrderVOs(List<Orders> orders) {
+        // 仅快照尚未回填的历史订单需要查询product-service（批量调用）
+        List<Long> productIds = orders.stream()
+                .filter(order -> order.getProductTitle() == null)
+                .map(Orders::getProductId)
+                .distinct()
+                .collect(Collectors.toList());
+
+        Map<Long, Product> productMap = new HashMap<>();
+        if (!productIds.isEmpty()) {
+            try {
+                Result<List<Product>> productResult = productServiceClient.getProductsByIds(productIds);
+                if (productResult.getCode() == 200 && productResult.getData() != null) {
+                    productResult.getData().forEach(product -> productMap.put(product.getId(), product));
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ 查询订单产品信息失败，产品标题将为空: productIds={}, error={}", productIds, e.getMessage());
+            }
+        }
+
+        // 转换为VO
+        Map<Long, Product> finalProductMap = productMap;
+        return orders.stream().map(order -> {
+            OrderVO vo = new OrderVO();
+            BeanUtils.copyProperties(order, vo);
+            
+            Product product = order.getProductTitle() == null ? finalProductMap.get(order.getProductId()) : null;
+            if (product != null) {
+                vo.setProductTitle(product.getTitle());
+                vo.setProductImage(product.getCoverImage());
+            }
+            
+            vo.setStatusText(getStatusText(order.getStatus()));
+            vo.setCanReview(order.getStatus() == 2);
+            
+            return vo;
+        }).collect(Collectors.toList());
     }
 
     /**
@@ -0,0 +1,6 @@
+-- 游标分页索引：/order/my/cursor 与 /merchant/orders/cursor
+-- 条件 user_id / merchant_id = ? AND (create_time < ? OR (create_time = ? AND id < ?))
+-- ORDER BY create_time DESC, id DESC LIMIT size + 1
+ALTER TABLE orders
+    ADD INDEX idx_orders_user_create_time (user_id, create_time, id),
+    ADD INDEX idx_orders_merchant_create_time (merchant_id, create_time, id);
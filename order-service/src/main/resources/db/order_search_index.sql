@@ -0,0 +1,24 @@
+-- 商户订单搜索索引：/merchant/orders 与 /merchant/orders/cursor 的 orderNo、contactPhone 条件
+-- 订单号：merchant_id = ? AND order_no = ? / LIKE 'prefix%'
+-- 手机号：完整号码 merchant_id = ? AND contact_phone = ?；尾号 merchant_id = ? AND contact_phone_rev LIKE '反转尾号%'
+-- orders_archive 必须同步变更且列顺序一致（归档使用 INSERT ... SELECT *）
+ALTER TABLE orders
+    ADD COLUMN contact_phone_rev VARCHAR(20) NULL COMMENT '反转的联系电话' AFTER contact_phone,
+    ADD INDEX idx_orders_merchant_order_no (merchant_id, order_no),
+    ADD INDEX idx_orders_merchant_phone (merchant_id, contact_phone),
+    ADD INDEX idx_orders_merchant_phone_rev (merchant_id, contact_phone_rev);
+
+ALTER TABLE orders_archive
+    ADD COLUMN contact_phone_rev VARCHAR(20) NULL COMMENT '反转的联系电话' AFTER contact_phone,
+    ADD INDEX idx_orders_merchant_order_no (merchant_id, order_no),
+    ADD INDEX idx_orders_merchant_phone (merchant_id, contact_phone),
+    ADD INDEX idx_orders_merchant_phone_rev (merchant_id, contact_phone_rev);
+
+-- 回填历史数据（新订单插入时自动填充）；数据量大时重复执行直到影响行数为0
+UPDATE orders SET contact_phone_rev = REVERSE(contact_phone)
+WHERE contact_phone_rev IS NULL AND contact_phone IS NOT NULL
+LIMIT 10000;
+
+UPDATE orders_archive SET contact_phone_rev = REVERSE(contact_phone)
+WHERE contact_phone_rev IS NULL AND contact_phone IS NOT NULL
+LIMIT 10000;
@@ -0,0 +1,10 @@
+-- 订单库存预占标记：1-下单时按订单号预占库存；0/NULL-直接扣减（抢购订单、启用预占前的订单）
+-- 预占订单找不到预占记录时不能支付，取消时也不再恢复库存；OrderTimeoutCancelJob 取消超时的预占订单和抢购订单（0）
+-- orders_archive 必须同步变更且列顺序一致（归档使用 INSERT ... SELECT *）
+ALTER TABLE orders
+    ADD COLUMN stock_held TINYINT NULL COMMENT '是否预占库存' AFTER quantity,
+    ADD INDEX idx_orders_status_create_time (status, create_time, id);
+
+ALTER TABLE orders_archive
+    ADD COLUMN stock_held TINYINT NULL COMMENT '是否预占库存' AFTER quantity,
+    ADD INDEX idx_orders_status_create_time (status, create_time, id);
@@ -0,0 +1,4 @@
+-- 归档订单表：已完成/已取消/已退款且超过保留期的订单由 OrderArchiveJob 从 orders 分批迁入
+-- 表结构（含游标分页索引）与 orders 相同，归档时使用 INSERT ... SELECT *，
+-- 因此 orders 增加列时 orders_archive 需同步增加
+CREATE TABLE IF NOT EXISTS orders_archive LIKE orders;
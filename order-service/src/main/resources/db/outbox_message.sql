@@ -0,0 +1,19 @@
+-- 发件箱消息表（order-service 与 review-service 共用）：业务事务内写入，由各服务的 OutboxRelay 异步投递到RabbitMQ
+CREATE TABLE IF NOT EXISTS outbox_message (
+    id            BIGINT       NOT NULL AUTO_INCREMENT,
+    source        VARCHAR(64)  NOT NULL COMMENT '写入消息的服务',
+    exchange      VARCHAR(128) NOT NULL,
+    routing_key   VARCHAR(128) NOT NULL,
+    message_type  VARCHAR(255) NOT NULL COMMENT '消息类全名',
+    payload       TEXT         NOT NULL COMMENT '消息内容（JSON）',
+    status        TINYINT      NOT NULL DEFAULT 0 COMMENT '0-待发送，1-已发送，2-多次发送失败',
+    attempts      INT          NOT NULL DEFAULT 0 COMMENT '发送失败次数（连接失败不计）',
+    next_attempt_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '下次可发送时间',
+    create_time   DATETIME     NOT NULL,
+    sent_time     DATETIME     NULL,
+    PRIMARY KEY (id),
+    -- 中继轮询：source = ? AND status = 0 AND next_attempt_time <= ? ORDER BY id LIMIT n
+    INDEX idx_outbox_source_status_id (source, status, id),
+    -- 清理：source = ? AND status = 1 AND sent_time < ?
+    INDEX idx_outbox_source_status_sent (source, status, sent_time)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '发件箱消息';
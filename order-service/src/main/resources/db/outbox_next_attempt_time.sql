@@ -0,0 +1,4 @@
+-- 发件箱退避重试：发送失败后按指数退避推迟到 next_attempt_time 再发送，中继只读取已到时间的待发送消息
+-- 已有数据取默认值（立即可发送）；新建库直接使用 outbox_message.sql
+ALTER TABLE outbox_message
+    ADD COLUMN next_attempt_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '下次可发送时间' AFTER attempts;
@@ -0,0 +1,324 @@
+package com.jingdezhen.tourism.product.cache;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jingdezhen.tourism.common.entity.Product;
+import com.jingdezhen.tourism.product.mapper.ProductMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 产品详情二级缓存（cache-aside）
+ * L1：进程内Caffeine，容量有界，同一商品并发未命中时只有一个线程回源（single-flight）；
+ * L2：Redis哈希 product:detail:{id}，每个字段存一个属性的JSON值；
+ * 商品不存在时缓存空标记，防止穿透。回填L2用脚本在键不存在时原子写入全部字段和过期时间，
+ * 不会与已有哈希合并，也不会留下没有过期时间的键。
+ * 写操作删除L2并通过 {@link #INVALIDATE_CHANNEL} 广播，各实例收到后清除自己的L1；
+ * 延迟片刻后再删除并广播一次，清掉删除前读到旧行、删除后才回填的旧值。
+ * 广播内容为 "{id}"（内容变更）或 "{id}:stats[:{rating}]"（仅销量、评分变更，不需要重建检索索引）。
+ * 注意：缓存中的库存仅供展示，实时库存以 /product/stock/{id} 为准
+ */
+@Slf4j
+@Component
+public class ProductCache {
+
+    public static final String INVALIDATE_CHANNEL = "product:cache:invalidate";
+
+    private static final String DETAIL_KEY_PREFIX = "product:detail:";
+    private static final String NULL_FIELD = "_null";
+    private static final String STATS_SUFFIX = ":stats";
+
+    /**
+     * 回填脚本：键不存在时写入全部字段并设置过期时间
+     * ARGV[1]-过期秒数，ARGV[2..]-字段、值交替
+     * 返回：1 已写入；0 键已存在
+     */
+    private static final String FILL_SCRIPT_TEXT =
+        "if redis.call('exists', KEYS[1]) == 1 then return 0 end " +
+        "redis.call('hset', KEYS[1], unpack(ARGV, 2)) " +
+        "redis.call('expire', KEYS[1], ARGV[1]) " +
+        "return 1";
+    private static final RedisScript<Long> FILL_SCRIPT = new DefaultRedisScript<>(FILL_SCRIPT_TEXT, Long.class);
+
+    private final ProductMapper productMapper;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Cache<Long, Optional<Product>> localCache;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+    private final Timer loadTimer;
+
+    @Value("${product.cache.redis.expire-seconds:1800}")
+    private long redisExpireSeconds;
+
+    @Value("${product.cache.redis.null-expire-seconds:60}")
+    private long nullExpireSeconds;
+
+    /**
+     * 延迟双删的间隔，应大于一次回源查询加回填的耗时
+     */
+    @Value("${product.cache.redis.double-delete-delay-ms:1000}")
+    private long doubleDeleteDelayMs;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "product-cache-double-delete");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ProductCache(ProductMapper productMapper, StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry,
+                        @Value("${product.cache.local.max-size:10000}") long localMaxSize,
+                        @Value("${product.cache.local.expire-seconds:60}") long localExpireSeconds) {
+        this.productMapper = productMapper;
+        this.stringRedisTemplate = stringRedisTemplate;
+        // L1过期时间较短，即使漏收失效广播也只会短暂读到旧值
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(localExpireSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "product.detail.local");
+        this.redisHits = Counter.builder("product.detail.redis.requests")
+                .tag("result", "hit")
+                .description("产品详情Redis缓存命中次数")
+                .register(meterRegistry);
+        this.redisMisses = Counter.builder("product.detail.redis.requests")
+                .tag("result", "miss")
+                .description("产品详情Redis缓存未命中次数")
+                .register(meterRegistry);
+        this.loadTimer = Timer.builder("product.detail.load")
+                .description("产品详情回源数据库耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获取产品，不存在时返回null
+     */
+    public Product get(Long id) {
+        return localCache.get(id, this::loadFromRedis).orElse(null);
+    }
+
+    /**
+     * 批量获取产品：L1未命中的部分通过一次Redis管道读取，仍未命中的用一次 selectBatchIds 回源
+     *
+     * @return 产品ID -> 产品，不存在的产品不包含在结果中
+     */
+    public Map<Long, Product> getAll(Collection<Long> ids) {
+        Map<Long, Product> result = new HashMap<>();
+        localCache.getAll(ids, this::loadAllFromRedis)
+                .forEach((id, product) -> product.ifPresent(p -> result.put(id, p)));
+        return result;
+    }
+
+    /**
+     * 产品内容变更后调用：删除L2并广播清除所有实例的L1，各实例同时刷新检索索引
+     */
+    public void evict(Long id) {
+        evict(id, String.valueOf(id));
+    }
+
+    /**
+     * 仅销量或评分变更后调用：清除缓存，检索索引只就地更新评分
+     *
+     * @param rating 变更后的评分，评分未变时传null
+     */
+    public void evictStats(Long id, BigDecimal rating) {
+        evict(id, id + STATS_SUFFIX + (rating != null ? ":" + rating.toPlainString() : ""));
+    }
+
+    private void evict(Long id, String payload) {
+        if (id == null) {
+            return;
+        }
+        localCache.invalidate(id);
+        deleteAndBroadcast(id, payload);
+        try {
+            scheduler.schedule(() -> deleteAndBroadcast(id, payload), doubleDeleteDelayMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("⚠️ 提交延迟删除缓存失败: productId={}, error={}", id, e.getMessage());
+        }
+    }
+
+    private void deleteAndBroadcast(Long id, String payload) {
+        try {
+            stringRedisTemplate.delete(DETAIL_KEY_PREFIX + id);
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, payload);
+        } catch (Exception e) {
+            log.warn("⚠️ 清除产品详情缓存失败: productId={}, error={}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * 收到失效广播时清除本实例的L1
+     */
+    public void evictLocal(Long id) {
+        localCache.invalidate(id);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 解析失效广播
+     *
+     * @return 无法解析时返回null
+     */
+    public static Invalidation parseInvalidation(String payload) {
+        try {
+            String[] parts = payload.split(":", 3);
+            Long productId = Long.valueOf(parts[0]);
+            if (parts.length == 1) {
+                return new Invalidation(productId, true, null);
+            }
+            if (!STATS_SUFFIX.equals(":" + parts[1])) {
+                return null;
+            }
+            return new Invalidation(productId, false, parts.length == 3 ? new BigDecimal(parts[2]) : null);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 失效广播
+     *
+     * @param contentChanged 是否为内容变更（标题、描述、标签、状态、分类等，需要重建该产品的检索索引）
+     * @param rating         仅统计变更时变更后的评分，评分未变时为null
+     */
+    public record Invalidation(Long productId, boolean contentChanged, BigDecimal rating) {
+    }
+
+    private Optional<Product> loadFromRedis(Long id) {
+        String key = DETAIL_KEY_PREFIX + id;
+        try {
+            Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(key);
+            if (!fields.isEmpty()) {
+                redisHits.increment();
+                return fields.containsKey(NULL_FIELD) ? Optional.empty() : Optional.of(decode(fields));
+            }
+            redisMisses.increment();
+        } catch (Exception e) {
+            log.warn("⚠️ 读取产品详情缓存失败，将查询数据库: productId={}, error={}", id, e.getMessage());
+        }
+
+        Product product = loadTimer.record(() -> productMapper.selectById(id));
+        try {
+            stringRedisTemplate.execute(FILL_SCRIPT, List.of(key), fillArgs(product));
+        } catch (Exception e) {
+            log.warn("⚠️ 写入产品详情缓存失败: productId={}, error={}", id, e.getMessage());
+        }
+        return Optional.ofNullable(product);
+    }
+
+    private Map<Long, Optional<Product>> loadAllFromRedis(Set<? extends Long> ids) {
+        List<Long> idList = new ArrayList<>(ids);
+        Map<Long, Optional<Product>> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        try {
+            List<Object> hashes = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                idList.forEach(id -> stringConnection.hGetAll(DETAIL_KEY_PREFIX + id));
+                return null;
+            });
+            for (int i = 0; i < idList.size(); i++) {
+                Map<?, ?> fields = (Map<?, ?>) hashes.get(i);
+                if (fields == null || fields.isEmpty()) {
+                    missing.add(idList.get(i));
+                } else {
+                    result.put(idList.get(i), fields.containsKey(NULL_FIELD) ? Optional.empty() : Optional.of(decode(fields)));
+                }
+            }
+            redisHits.increment(result.size());
+            redisMisses.increment(missing.size());
+        } catch (Exception e) {
+            log.warn("⚠️ 批量读取产品详情缓存失败，将查询数据库: count={}, error={}", idList.size(), e.getMessage());
+            result.clear();
+            missing = idList;
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        List<Long> toLoad = missing;
+        Map<Long, Product> loaded = loadTimer.record(() -> productMapper.selectBatchIds(toLoad)).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (Long id : toLoad) {
+                    String[] fillArgs = fillArgs(loaded.get(id));
+                    String[] keysAndArgs = new String[fillArgs.length + 1];
+                    keysAndArgs[0] = DETAIL_KEY_PREFIX + id;
+                    System.arraycopy(fillArgs, 0, keysAndArgs, 1, fillArgs.length);
+                    stringConnection.eval(FILL_SCRIPT_TEXT, ReturnType.INTEGER, 1, keysAndArgs);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("⚠️ 批量写入产品详情缓存失败: count={}, error={}", toLoad.size(), e.getMessage());
+        }
+        toLoad.forEach(id -> result.put(id, Optional.ofNullable(loaded.get(id))));
+        return result;
+    }
+
+    /**
+     * 回填脚本参数：过期秒数，之后字段、值交替
+     */
+    private String[] fillArgs(Product product) {
+        Map<String, String> fields = product != null ? encode(product) : Map.of(NULL_FIELD, "1");
+        String[] args = new String[fields.size() * 2 + 1];
+        args[0] = String.valueOf(product != null ? redisExpireSeconds : nullExpireSeconds);
+        int i = 1;
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            args[i++] = field.getKey();
+            args[i++] = field.getValue();
+        }
+        return args;
+    }
+
+    private static Map<String, String> encode(Product product) {
+        Map<String, String> fields = new HashMap<>();
+        JSONObject.from(product).forEach((name, value) -> {
+            if (value != null) {
+                fields.put(name, JSON.toJSONString(value));
+            }
+        });
+        return fields;
+    }
+
+    private static Product decode(Map<?, ?> fields) {
+        JSONObject object = new JSONObject();
+        fields.forEach((name, value) -> object.put((String) name, JSON.parse((String) value)));
+        return object.to(Product.class);
+    }
+}
@@ -0,0 +1,124 @@
+package com.jingdezhen.tourism.product.cache;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.TypeReference;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.jingdezhen.tourism.common.entity.Product;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 产品列表缓存（按版本号失效）
+ * 缓存key中嵌入筛选范围对应的版本号：只按分类筛选用分类版本，只按区域筛选用区域版本，
+ * 同时筛选时两者都带上，不筛选时用全局版本。
+ * 产品变更时只递增受影响的分类、区域和全局版本，旧key不再被命中，由过期时间自然淘汰；
+ * 失效为O(1)，不再扫描Redis
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductListCache {
+
+    private static final String LIST_KEY_PREFIX = "product:list:";
+    private static final String GEN_KEY_PREFIX = "product:list:gen:";
+    private static final String GLOBAL_GEN_KEY = GEN_KEY_PREFIX + "all";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${product.cache.list.expire-seconds:3600}")
+    private long expireSeconds;
+
+    /**
+     * 生成缓存Key（读取当前版本号）
+     */
+    public String cacheKey(Long current, Long size, Long categoryId, String region, String keyword) {
+        List<String> genKeys = new ArrayList<>(2);
+        if (categoryId != null) {
+            genKeys.add(categoryGenKey(categoryId));
+        }
+        if (StringUtils.hasText(region)) {
+            genKeys.add(regionGenKey(region));
+        }
+        if (genKeys.isEmpty()) {
+            genKeys.add(GLOBAL_GEN_KEY);
+        }
+        List<String> gens = stringRedisTemplate.opsForValue().multiGet(genKeys);
+
+        StringBuilder key = new StringBuilder(LIST_KEY_PREFIX);
+        key.append(categoryId != null ? categoryId : "all");
+        key.append(":");
+        key.append(StringUtils.hasText(region) ? region : "all");
+        key.append(":");
+        key.append(StringUtils.hasText(keyword) ? keyword : "all");
+        key.append(":");
+        key.append(current);
+        key.append(":");
+        key.append(size);
+        key.append(":v");
+        for (int i = 0; i < genKeys.size(); i++) {
+            String gen = gens != null ? gens.get(i) : null;
+            key.append(i > 0 ? "." : "").append(gen != null ? gen : "0");
+        }
+        return key.toString();
+    }
+
+    public Page<Product> get(String cacheKey) {
+        String cachedData = stringRedisTemplate.opsForValue().get(cacheKey);
+        return cachedData != null ? JSON.parseObject(cachedData, new TypeReference<Page<Product>>() {}) : null;
+    }
+
+    public void put(String cacheKey, Page<Product> page) {
+        stringRedisTemplate.opsForValue().set(cacheKey, JSON.toJSONString(page), expireSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 产品变更后递增受影响的版本号
+     * 修改了分类或区域时需同时传入修改前后的产品
+     */
+    public void invalidate(Product... products) {
+        Set<String> genKeys = new LinkedHashSet<>();
+        genKeys.add(GLOBAL_GEN_KEY);
+        for (Product product : products) {
+            if (product == null) {
+                continue;
+            }
+            if (product.getCategoryId() != null) {
+                genKeys.add(categoryGenKey(product.getCategoryId()));
+            }
+            if (StringUtils.hasText(product.getRegion())) {
+                genKeys.add(regionGenKey(product.getRegion()));
+            }
+        }
+
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                genKeys.forEach(stringConnection::incr);
+                return null;
+            });
+            log.debug("✅ 产品列表缓存版本已更新: {}", genKeys);
+        } catch (Exception e) {
+            log.warn("⚠️ 更新产品列表缓存版本失败: keys={}, error={}", genKeys, e.getMessage());
+        }
+    }
+
+    private static String categoryGenKey(Long categoryId) {
+        return GEN_KEY_PREFIX + "cat:" + categoryId;
+    }
+
+    private static String regionGenKey(String region) {
+        return GEN_KEY_PREFIX + "region:" + region;
+    }
+}
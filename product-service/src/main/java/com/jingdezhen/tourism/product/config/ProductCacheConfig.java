@@ -0,0 +1,48 @@
+package com.jingdezhen.tourism.product.config;
+
+import com.jingdezhen.tourism.product.cache.ProductCache;
+import com.jingdezhen.tourism.product.search.ProductSearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 产品缓存配置：订阅产品变更广播，清除本实例的详情缓存；
+ * 内容变更时刷新该产品的检索索引，仅销量、评分变更时不回查数据库，只就地更新索引中的评分
+ */
+@Slf4j
+@Configuration
+public class ProductCacheConfig {
+
+    @Bean
+    public RedisMessageListenerContainer productCacheListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       ProductCache productCache,
+                                                                       ProductSearchIndex productSearchIndex) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            ProductCache.Invalidation invalidation = ProductCache.parseInvalidation(body);
+            if (invalidation == null) {
+                log.warn("⚠️ 忽略无效的缓存失效消息: {}", body);
+                return;
+            }
+            try {
+                productCache.evictLocal(invalidation.productId());
+                if (invalidation.contentChanged()) {
+                    productSearchIndex.refresh(invalidation.productId());
+                } else if (invalidation.rating() != null) {
+                    productSearchIndex.updateRating(invalidation.productId(), invalidation.rating().doubleValue());
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ 刷新产品检索索引失败: productId={}, error={}", body, e.getMessage());
+            }
+        }, new ChannelTopic(ProductCache.INVALIDATE_CHANNEL));
+        return container;
+    }
+}
@@ -1,11 +1,14 @@
 package com.jingdezhen.tourism.product.config;
 
+import org.aopalliance.intercept.MethodInterceptor;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -23,11 +26,32 @@ public class RabbitMQConfig {
     public static final String ORDER_CANCELED_QUEUE = "order.canceled.queue";
     public static final String REVIEW_CHANGED_QUEUE = "review.changed.queue";
 
-    // 路由键
+    // 路由键（生产者在末尾追加 .{productId}）
     public static final String ORDER_PAID_ROUTING_KEY = "order.paid";
     public static final String ORDER_CANCELED_ROUTING_KEY = "order.canceled";
     public static final String REVIEW_CHANGED_ROUTING_KEY = "review.changed";
 
+    // 按产品分片开关
+    public static final String SHARD_ENABLED_PROPERTY = "product.mq.shard.enabled";
+
+    // 批量监听器容器工厂
+    public static final String BATCH_LISTENER_FACTORY = "batchRabbitListenerContainerFactory";
+
+    @Value("${product.mq.concurrency:2}")
+    private int concurrency;
+
+    @Value("${product.mq.max-concurrency:8}")
+    private int maxConcurrency;
+
+    @Value("${product.mq.prefetch:50}")
+    private int prefetch;
+
+    @Value("${product.mq.order-paid.batch-size:100}")
+    private int orderPaidBatchSize;
+
+    @Value("${product.mq.order-paid.receive-timeout-ms:200}")
+    private long orderPaidReceiveTimeoutMs;
+
     /**
      * 配置消息转换器（JSON格式）
      */
@@ -58,13 +82,20 @@ public class RabbitMQConfig {
 
     /**
      * 配置监听器容器工厂
+     * 监听方法（含事务）正常返回后由容器确认，抛出异常时转入延迟重试队列（见 RetryQueueConfig）；
+     * 消费者通过 MessageDeduplicator 去重，可以多线程并发消费
      */
     @Bean
-    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(ConnectionFactory connectionFactory) {
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(ConnectionFactory connectionFactory,
+                                                                               MethodInterceptor productRetryInterceptor) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
         factory.setMessageConverter(messageConverter());
-        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(maxConcurrency);
+        factory.setPrefetchCount(prefetch);
+        factory.setAdviceChain(productRetryInterceptor);
         // 设置连接失败时不影响应用启动（开发环境友好）
         factory.setMissingQueuesFatal(false);
         // 设置自动恢复连接
@@ -72,6 +103,29 @@ public class RabbitMQConfig {
         return factory;
     }
 
+    /**
+     * 配置批量监听器容器工厂
+     * 每次最多攒够 batch-size 条消息或等待 receive-timeout-ms 后整批交给监听方法，
+     * 监听方法返回后容器以最后一条消息的投递标签一次确认整批，失败时整批逐条转入延迟重试队列
+     */
+    @Bean(BATCH_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(ConnectionFactory connectionFactory,
+                                                                                    MethodInterceptor productRetryInterceptor) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter());
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(orderPaidBatchSize);
+        factory.setPrefetchCount(orderPaidBatchSize);
+        factory.setReceiveTimeout(orderPaidReceiveTimeoutMs);
+        factory.setAdviceChain(productRetryInterceptor);
+        factory.setMissingQueuesFatal(false);
+        factory.setAutoStartup(true);
+        return factory;
+    }
+
     /**
      * 创建交换机（主题交换机）
      */
@@ -105,36 +159,39 @@ public class RabbitMQConfig {
     }
 
     /**
-     * 绑定订单支付队列到交换机
+     * 绑定订单支付队列到交换机（未启用分片时）
      */
     @Bean
+    @ConditionalOnProperty(name = SHARD_ENABLED_PROPERTY, havingValue = "false", matchIfMissing = true)
     public Binding orderPaidBinding() {
         return BindingBuilder
                 .bind(orderPaidQueue())
                 .to(productExchange())
-                .with(ORDER_PAID_ROUTING_KEY);
+                .with(ORDER_PAID_ROUTING_KEY + ".#");
     }
 
     /**
-     * 绑定订单取消队列到交换机
+     * 绑定订单取消队列到交换机（未启用分片时）
      */
     @Bean
+    @ConditionalOnProperty(name = SHARD_ENABLED_PROPERTY, havingValue = "false", matchIfMissing = true)
     public Binding orderCanceledBinding() {
         return BindingBuilder
                 .bind(orderCanceledQueue())
                 .to(productExchange())
-                .with(ORDER_CANCELED_ROUTING_KEY);
+                .with(ORDER_CANCELED_ROUTING_KEY + ".#");
     }
 
     /**
-     * 绑定评论变更队列到交换机
+     * 绑定评论变更队列到交换机（未启用分片时）
      */
     @Bean
+    @ConditionalOnProperty(name = SHARD_ENABLED_PROPERTY, havingValue = "false", matchIfMissing = true)
     public Binding reviewChangedBinding() {
         return BindingBuilder
                 .bind(reviewChangedQueue())
                 .to(productExchange())
-                .with(REVIEW_CHANGED_ROUTING_KEY);
+                .with(REVIEW_CHANGED_ROUTING_KEY + ".#");
     }
 }
 
@@ -0,0 +1,68 @@
+package com.jingdezhen.tourism.product.config;
+
+import com.jingdezhen.tourism.product.consumer.RetryTierRecoverer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 消费失败的延迟重试与停放队列
+ * 每个重试档位一个扇出交换机和一个带TTL的队列，队列的死信交换机为默认交换机：
+ * 失败消息以原队列名为路由键发到对应档位，TTL到期后经默认交换机回到原队列（分片队列同样适用）。
+ * 超过全部档位的消息进入停放队列，排查后通过管理接口重放。
+ * 失败消息立即转走，消费线程不在进程内等待退避，其他消息不受影响
+ */
+@Configuration
+public class RetryQueueConfig {
+
+    public static final String PARKING_QUEUE = "product.parking.queue";
+
+    @Value("${product.mq.retry.delays-seconds:5,30,300}")
+    private long[] delaysSeconds;
+
+    /**
+     * 声明重试档位与停放队列
+     */
+    @Bean
+    public Declarables productRetryDeclarables() {
+        List<Declarable> declarables = new ArrayList<>();
+        for (long delay : delaysSeconds) {
+            FanoutExchange exchange = new FanoutExchange(retryExchangeName(delay), true, false);
+            Queue queue = QueueBuilder.durable(retryExchangeName(delay) + ".queue")
+                    .ttl((int) (delay * 1000))
+                    .deadLetterExchange("")
+                    .build();
+            declarables.add(exchange);
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(exchange));
+        }
+        declarables.add(QueueBuilder.durable(PARKING_QUEUE).build());
+        return new Declarables(declarables);
+    }
+
+    /**
+     * 监听器容器的失败处理：只执行一次，失败后交给 RetryTierRecoverer 转入重试档位或停放队列
+     */
+    @Bean
+    public MethodInterceptor productRetryInterceptor(RetryTierRecoverer retryTierRecoverer) {
+        return RetryInterceptorBuilder.stateless()
+                .maxAttempts(1)
+                .recoverer(retryTierRecoverer)
+                .build();
+    }
+
+    public static String retryExchangeName(long delaySeconds) {
+        return "product.retry." + delaySeconds + "s";
+    }
+}
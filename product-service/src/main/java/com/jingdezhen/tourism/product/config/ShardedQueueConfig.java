@@ -0,0 +1,185 @@
+package com.jingdezhen.tourism.product.config;
+
+import com.jingdezhen.tourism.product.consumer.ProductMessageConsumer;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.CustomExchange;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.MethodRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按产品分片的消息队列（product.mq.shard.enabled=true 时启用，需要RabbitMQ启用 rabbitmq_consistent_hash_exchange 插件）
+ * 生产者的路由键以产品ID结尾，product.exchange 把每类事件转发到各自的一致性哈希交换机，
+ * 再按路由键哈希分配到 shard-count 个分片队列。分片队列为单活消费者队列（x-single-active-consumer），
+ * 多实例各自监听全部分片，但每个分片同一时刻只有一个消费者收到消息，当前消费者下线后由其他实例接替：
+ * 同一产品的事件始终进入同一分片并按顺序处理，不同分片之间并行。
+ * 启动时解除旧队列在 product.exchange 上的绑定（绑定保存在Broker上，不会因不再声明而消失），
+ * 旧队列仍保留监听，积压消息消费完后可手动删除。所有实例需同时切换，未启用分片的实例重连时会重新声明旧绑定
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = RabbitMQConfig.SHARD_ENABLED_PROPERTY, havingValue = "true")
+public class ShardedQueueConfig implements RabbitListenerConfigurer, BeanFactoryAware {
+
+    public static final String SHARD_LISTENER_FACTORY = "shardRabbitListenerContainerFactory";
+
+    private static final String HASH_EXCHANGE_TYPE = "x-consistent-hash";
+
+    @Value("${product.mq.shard.count:4}")
+    private int shardCount;
+
+    @Value("${product.mq.shard.prefetch:20}")
+    private int prefetch;
+
+    private BeanFactory beanFactory;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    /**
+     * 分片队列的监听器容器工厂：每个分片一个消费者线程
+     */
+    @Bean(SHARD_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory shardRabbitListenerContainerFactory(ConnectionFactory connectionFactory,
+                                                                                   MessageConverter messageConverter,
+                                                                                   MethodInterceptor productRetryInterceptor) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter);
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setPrefetchCount(prefetch);
+        factory.setAdviceChain(productRetryInterceptor);
+        factory.setMissingQueuesFatal(false);
+        return factory;
+    }
+
+    /**
+     * 声明一致性哈希交换机、分片队列及绑定
+     */
+    @Bean
+    public Declarables productShardDeclarables() {
+        List<Declarable> declarables = new ArrayList<>();
+        declareShards(declarables, RabbitMQConfig.ORDER_PAID_ROUTING_KEY, RabbitMQConfig.ORDER_PAID_QUEUE);
+        declareShards(declarables, RabbitMQConfig.ORDER_CANCELED_ROUTING_KEY, RabbitMQConfig.ORDER_CANCELED_QUEUE);
+        declareShards(declarables, RabbitMQConfig.REVIEW_CHANGED_ROUTING_KEY, RabbitMQConfig.REVIEW_CHANGED_QUEUE);
+        return new Declarables(declarables);
+    }
+
+    private void declareShards(List<Declarable> declarables, String routingKey, String queue) {
+        String hashExchange = hashExchangeName(routingKey);
+        declarables.add(new CustomExchange(hashExchange, HASH_EXCHANGE_TYPE, true, false));
+        declarables.add(new Binding(hashExchange, Binding.DestinationType.EXCHANGE,
+                RabbitMQConfig.PRODUCT_EXCHANGE, routingKey + ".#", null));
+        for (int i = 0; i < shardCount; i++) {
+            Queue shard = QueueBuilder.durable(shardQueueName(queue, i)).singleActiveConsumer().build();
+            declarables.add(shard);
+            // 一致性哈希交换机的绑定键为权重，各分片权重相同
+            declarables.add(new Binding(shard.getName(), Binding.DestinationType.QUEUE, hashExchange, "1", null));
+        }
+    }
+
+    /**
+     * 解除旧队列在 product.exchange 上的绑定，否则事件会同时进入旧队列与分片队列被重复处理
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void removeLegacyBindings() {
+        AmqpAdmin amqpAdmin = beanFactory.getBean(AmqpAdmin.class);
+        removeLegacyBindings(amqpAdmin, RabbitMQConfig.ORDER_PAID_QUEUE, RabbitMQConfig.ORDER_PAID_ROUTING_KEY);
+        removeLegacyBindings(amqpAdmin, RabbitMQConfig.ORDER_CANCELED_QUEUE, RabbitMQConfig.ORDER_CANCELED_ROUTING_KEY);
+        removeLegacyBindings(amqpAdmin, RabbitMQConfig.REVIEW_CHANGED_QUEUE, RabbitMQConfig.REVIEW_CHANGED_ROUTING_KEY);
+    }
+
+    private void removeLegacyBindings(AmqpAdmin amqpAdmin, String queue, String routingKey) {
+        // 按产品路由前的精确路由键，以及未分片时的通配路由键
+        for (String key : List.of(routingKey, routingKey + ".#")) {
+            try {
+                amqpAdmin.removeBinding(new Binding(queue, Binding.DestinationType.QUEUE,
+                        RabbitMQConfig.PRODUCT_EXCHANGE, key, null));
+                log.info("✅ 已解除旧队列绑定: queue={}, routingKey={}", queue, key);
+            } catch (Exception e) {
+                log.warn("⚠️ 解除旧队列绑定失败，请在RabbitMQ中手动解除: queue={}, routingKey={}, error={}",
+                        queue, key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 为每个分片队列注册独立的监听器容器
+     */
+    @Override
+    public void configureRabbitListeners(RabbitListenerEndpointRegistrar registrar) {
+        DefaultMessageHandlerMethodFactory handlerMethodFactory = new DefaultMessageHandlerMethodFactory();
+        handlerMethodFactory.setBeanFactory(beanFactory);
+        handlerMethodFactory.afterPropertiesSet();
+
+        ProductMessageConsumer consumer = beanFactory.getBean(ProductMessageConsumer.class);
+        SimpleRabbitListenerContainerFactory shardFactory =
+                beanFactory.getBean(SHARD_LISTENER_FACTORY, SimpleRabbitListenerContainerFactory.class);
+        SimpleRabbitListenerContainerFactory batchFactory =
+                beanFactory.getBean(RabbitMQConfig.BATCH_LISTENER_FACTORY, SimpleRabbitListenerContainerFactory.class);
+
+        for (int i = 0; i < shardCount; i++) {
+            register(registrar, handlerMethodFactory, consumer, "handleOrderPaid",
+                    shardQueueName(RabbitMQConfig.ORDER_PAID_QUEUE, i), batchFactory, true);
+            register(registrar, handlerMethodFactory, consumer, "handleOrderCanceled",
+                    shardQueueName(RabbitMQConfig.ORDER_CANCELED_QUEUE, i), shardFactory, false);
+            register(registrar, handlerMethodFactory, consumer, "handleReviewChanged",
+                    shardQueueName(RabbitMQConfig.REVIEW_CHANGED_QUEUE, i), shardFactory, false);
+        }
+    }
+
+    private void register(RabbitListenerEndpointRegistrar registrar, DefaultMessageHandlerMethodFactory handlerMethodFactory,
+                          ProductMessageConsumer consumer, String methodName, String queue,
+                          SimpleRabbitListenerContainerFactory factory, boolean batch) {
+        Method method = ReflectionUtils.findMethod(ProductMessageConsumer.class, methodName, (Class<?>[]) null);
+        if (method == null) {
+            throw new IllegalStateException("消费方法不存在: " + methodName);
+        }
+        MethodRabbitListenerEndpoint endpoint = new MethodRabbitListenerEndpoint();
+        endpoint.setId("shard-" + queue);
+        endpoint.setQueueNames(queue);
+        endpoint.setBean(consumer);
+        endpoint.setMethod(method);
+        endpoint.setMessageHandlerMethodFactory(handlerMethodFactory);
+        endpoint.setBeanFactory(beanFactory);
+        endpoint.setBatchListener(batch);
+        registrar.registerEndpoint(endpoint, factory);
+    }
+
+    private static String hashExchangeName(String routingKey) {
+        return "product." + routingKey + ".hash";
+    }
+
+    private static String shardQueueName(String queue, int shard) {
+        return queue + "." + shard;
+    }
+}
@@ -0,0 +1,71 @@
+package com.jingdezhen.tourism.product.consumer;
+
+import com.jingdezhen.tourism.product.config.RetryQueueConfig;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.GetResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 停放队列重放
+ * 逐条取出停放的消息发回原队列后再确认，重试次数清零；中途失败时未确认的消息留在停放队列
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ParkingLotReplayer {
+
+    private final RabbitTemplate rabbitTemplate;
+
+    /**
+     * 停放队列中的消息数
+     */
+    public long count() {
+        Long count = rabbitTemplate.execute(channel -> channel.messageCount(RetryQueueConfig.PARKING_QUEUE));
+        return count != null ? count : 0;
+    }
+
+    /**
+     * 重放最多 limit 条停放的消息
+     *
+     * @return 实际重放的条数
+     */
+    public int replay(int limit) {
+        int replayed = 0;
+        while (replayed < limit) {
+            Boolean moved = rabbitTemplate.execute(channel -> {
+                GetResponse response = channel.basicGet(RetryQueueConfig.PARKING_QUEUE, false);
+                if (response == null) {
+                    return false;
+                }
+                AMQP.BasicProperties properties = response.getProps();
+                Map<String, Object> headers = properties.getHeaders() != null
+                        ? new HashMap<>(properties.getHeaders()) : new HashMap<>();
+                Object originQueue = headers.get(RetryTierRecoverer.ORIGIN_QUEUE_HEADER);
+                if (originQueue == null) {
+                    channel.basicNack(response.getEnvelope().getDeliveryTag(), false, true);
+                    log.warn("⚠️ 停放消息缺少原队列信息，停止重放: messageId={}", properties.getMessageId());
+                    return false;
+                }
+                // 原队列不存在时抛出异常并关闭通道，消息自动回到停放队列
+                channel.queueDeclarePassive(originQueue.toString());
+                headers.remove(RetryTierRecoverer.RETRY_COUNT_HEADER);
+                channel.basicPublish("", originQueue.toString(), properties.builder().headers(headers).build(),
+                        response.getBody());
+                channel.basicAck(response.getEnvelope().getDeliveryTag(), false);
+                return true;
+            });
+            if (!Boolean.TRUE.equals(moved)) {
+                break;
+            }
+            replayed++;
+        }
+        log.info("✅ 停放消息重放完成: replayed={}", replayed);
+        return replayed;
+    }
+}
@@ -1,25 +1,34 @@
 package com.jingdezhen.tourism.product.consumer;
 
+import com.baomidou.mybatisplus.core.batch.MybatisBatch;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.jingdezhen.tourism.common.entity.Product;
-import com.jingdezhen.tourism.common.entity.Review;
+import com.jingdezhen.tourism.common.idempotent.MessageDeduplicator;
 import com.jingdezhen.tourism.common.message.OrderCanceledMessage;
 import com.jingdezhen.tourism.common.message.OrderPaidMessage;
 import com.jingdezhen.tourism.common.message.ReviewChangedMessage;
-import com.jingdezhen.tourism.common.vo.Result;
+import com.jingdezhen.tourism.product.cache.ProductCache;
 import com.jingdezhen.tourism.product.config.RabbitMQConfig;
-import com.jingdezhen.tourism.product.feign.ReviewServiceClient;
 import com.jingdezhen.tourism.product.mapper.ProductMapper;
+import com.jingdezhen.tourism.product.rating.ProductRatingReconciler;
 import com.jingdezhen.tourism.product.service.StockService;
+import com.jingdezhen.tourism.product.stock.StockReservationEngine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * 产品服务消息消费者
@@ -29,39 +38,62 @@ import java.math.RoundingMode;
 @RequiredArgsConstructor
 public class ProductMessageConsumer {
 
+    private static final String ORDER_PAID_SCOPE = "order-paid";
+    private static final String ORDER_CANCELED_SCOPE = "order-canceled";
+    private static final String REVIEW_CHANGED_SCOPE = "review-changed";
+
     private final ProductMapper productMapper;
+    private final SqlSessionFactory sqlSessionFactory;
     private final StockService stockService;
-    private final ReviewServiceClient reviewServiceClient;
+    private final ProductRatingReconciler productRatingReconciler;
+    private final ProductCache productCache;
+    private final MessageDeduplicator messageDeduplicator;
 
     /**
-     * 消费订单支付消息 - 更新产品销量
+     * 批量消费订单支付消息 - 更新产品销量
+     * 同一批消息按订单去重、按产品合并数量，按产品ID顺序用一次JDBC批量执行 sales = COALESCE(sales, 0) + ?，
+     * 成功后由容器一次确认整批；失败时整批转入延迟重试队列
      */
-    @RabbitListener(queues = RabbitMQConfig.ORDER_PAID_QUEUE)
-    @Transactional(rollbackFor = Exception.class)
-    public void handleOrderPaid(OrderPaidMessage message, 
-                                @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+    @RabbitListener(queues = RabbitMQConfig.ORDER_PAID_QUEUE, containerFactory = RabbitMQConfig.BATCH_LISTENER_FACTORY)
+    public void handleOrderPaid(List<Message<OrderPaidMessage>> messages) {
+        Map<Long, Integer> salesByProduct = new TreeMap<>();
+        List<Long> claimedOrderIds = new ArrayList<>();
+        Set<Long> seenOrderIds = new HashSet<>();
         try {
-            log.info("📨 收到订单支付消息: orderId={}, productId={}, quantity={}", 
-                message.getOrderId(), message.getProductId(), message.getQuantity());
-
-            Product product = productMapper.selectById(message.getProductId());
-            if (product == null) {
-                log.warn("⚠️ 产品不存在，无法更新销量: productId={}", message.getProductId());
-                return;
+            for (Message<OrderPaidMessage> message : messages) {
+                OrderPaidMessage payload = message.getPayload();
+                if (payload.getProductId() == null || payload.getQuantity() == null) {
+                    log.warn("⚠️ 订单支付消息缺少产品或数量，已忽略: orderId={}", payload.getOrderId());
+                    continue;
+                }
+                // 同一批内的重复消息只处理第一条，否则第二次认领会因正在处理而使整批失败
+                if (!seenOrderIds.add(payload.getOrderId())) {
+                    continue;
+                }
+                int claimed = messageDeduplicator.claim(ORDER_PAID_SCOPE, payload.getOrderId());
+                if (claimed == MessageDeduplicator.DUPLICATE) {
+                    continue;
+                }
+                if (claimed == MessageDeduplicator.IN_PROGRESS) {
+                    throw new IllegalStateException("订单支付消息正在处理中: orderId=" + payload.getOrderId());
+                }
+                claimedOrderIds.add(payload.getOrderId());
+                salesByProduct.merge(payload.getProductId(), payload.getQuantity(), Integer::sum);
             }
 
-            // 更新产品销量
-            Integer currentSales = product.getSales() != null ? product.getSales() : 0;
-            product.setSales(currentSales + message.getQuantity());
-            productMapper.updateById(product);
-
-            log.info("✅ 产品销量更新成功: productId={}, 原销量={}, 新增={}, 现销量={}", 
-                message.getProductId(), currentSales, message.getQuantity(), product.getSales());
-
+            if (!salesByProduct.isEmpty()) {
+                new MybatisBatch<>(sqlSessionFactory, new ArrayList<>(salesByProduct.entrySet()))
+                        .execute(new MybatisBatch.Method<Product>(ProductMapper.class).<Map.Entry<Long, Integer>>get(
+                                "incrementSales", entry -> Map.of("productId", entry.getKey(), "quantity", entry.getValue())));
+                salesByProduct.keySet().forEach(productId -> productCache.evictStats(productId, null));
+            }
+            claimedOrderIds.forEach(orderId -> messageDeduplicator.complete(ORDER_PAID_SCOPE, orderId));
+            log.info("✅ 产品销量批量更新成功: messages={}, products={}", messages.size(), salesByProduct.size());
         } catch (Exception e) {
-            log.error("❌ 处理订单支付消息失败: orderId={}, productId={}, error={}", 
-                message.getOrderId(), message.getProductId(), e.getMessage(), e);
-            throw e; // 抛出异常，让RabbitMQ重新投递
+            log.error("❌ 批量处理订单支付消息失败，整批转入重试: messages={}, error={}",
+                messages.size(), e.getMessage(), e);
+            claimedOrderIds.forEach(orderId -> messageDeduplicator.release(ORDER_PAID_SCOPE, orderId));
+            throw e;
         }
     }
 
@@ -70,73 +102,122 @@ public class ProductMessageConsumer {
      */
     @RabbitListener(queues = RabbitMQConfig.ORDER_CANCELED_QUEUE)
     @Transactional(rollbackFor = Exception.class)
-    public void handleOrderCanceled(OrderCanceledMessage message,
-                                   @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+    public void handleOrderCanceled(OrderCanceledMessage message) {
         try {
-            log.info("📨 收到订单取消消息: orderId={}, productId={}, quantity={}", 
-                message.getOrderId(), message.getProductId(), message.getQuantity());
-
-            // 恢复库存（通过StockService，会同时更新Redis和数据库）
-            stockService.increaseStock(message.getProductId(), message.getQuantity());
+            log.info("📨 收到订单取消消息: orderId={}, orderNo={}, productId={}, quantity={}", 
+                message.getOrderId(), message.getOrderNo(), message.getProductId(), message.getQuantity());
 
-            log.info("✅ 库存恢复成功: productId={}, quantity={}", 
-                message.getProductId(), message.getQuantity());
+            messageDeduplicator.execute(ORDER_CANCELED_SCOPE, message.getOrderId(), () -> restoreStock(message));
 
         } catch (Exception e) {
             log.error("❌ 处理订单取消消息失败: orderId={}, productId={}, error={}", 
                 message.getOrderId(), message.getProductId(), e.getMessage(), e);
-            throw e; // 抛出异常，让RabbitMQ重新投递
+            throw e; // 抛出异常，转入延迟重试队列
         }
     }
 
     /**
-     * 消费评论变更消息 - 更新产品评分
+     * 消费评论变更消息 - 增量更新产品评分
      */
     @RabbitListener(queues = RabbitMQConfig.REVIEW_CHANGED_QUEUE)
     @Transactional(rollbackFor = Exception.class)
     public void handleReviewChanged(ReviewChangedMessage message,
-                                   @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+                                   @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
         try {
-            log.info("📨 收到评论变更消息: reviewId={}, productId={}, changeType={}", 
-                message.getReviewId(), message.getProductId(), message.getChangeType());
-
-            // 通过Feign调用review-service获取该产品的所有评论
-            Result<java.util.List<Review>> reviewResult = reviewServiceClient.getProductAllReviews(message.getProductId());
-            
-            if (reviewResult.getCode() != 200 || reviewResult.getData() == null || reviewResult.getData().isEmpty()) {
-                // 没有评论，设置为默认5.0
-                Product product = productMapper.selectById(message.getProductId());
-                if (product != null) {
-                    product.setRating(new BigDecimal("5.0"));
-                    productMapper.updateById(product);
-                    log.info("✅ 产品评分更新为默认值: productId={}, rating=5.0", message.getProductId());
-                }
-                return;
-            }
+            log.info("📨 收到评论变更消息: reviewId={}, productId={}, changeType={}, rating={}, oldRating={}", 
+                message.getReviewId(), message.getProductId(), message.getChangeType(),
+                message.getRating(), message.getOldRating());
 
-            // 计算平均评分
-            java.util.List<Review> reviews = reviewResult.getData();
-            double avgRating = reviews.stream()
-                    .mapToInt(Review::getRating)
-                    .average()
-                    .orElse(5.0);
-
-            // 更新产品评分
-            Product product = productMapper.selectById(message.getProductId());
-            if (product != null) {
-                product.setRating(new BigDecimal(avgRating).setScale(1, RoundingMode.HALF_UP));
-                productMapper.updateById(product);
-                log.info("✅ 产品评分更新成功: productId={}, 评论数={}, 平均评分={}", 
-                    message.getProductId(), reviews.size(), product.getRating());
-            } else {
-                log.warn("⚠️ 产品不存在，无法更新评分: productId={}", message.getProductId());
-            }
+            // 未经发件箱发送的消息没有消息ID，按评论和变更类型去重
+            String dedupKey = messageId != null ? messageId : message.getReviewId() + ":" + message.getChangeType();
+            messageDeduplicator.execute(REVIEW_CHANGED_SCOPE, dedupKey, () -> applyRatingChange(message));
 
         } catch (Exception e) {
             log.error("❌ 处理评论变更消息失败: reviewId={}, productId={}, error={}", 
                 message.getReviewId(), message.getProductId(), e.getMessage(), e);
-            throw e; // 抛出异常，让RabbitMQ重新投递
+            throw e; // 抛出异常，转入延迟重试队列
         }
     }
-}
 
+    /**
+     * 归还订单占用的库存
+     */
+    private void restoreStock(OrderCanceledMessage message) {
+        // 优先归还订单的库存预占；预占已超时归还或已取消归还时无需再处理
+        if (message.getOrderNo() != null) {
+            String status = stockService.releaseHold(message.getOrderNo(), StockReservationEngine.HOLD_RELEASED);
+            if (!StockReservationEngine.HOLD_COMMITTED.equals(status)
+                    && !StockReservationEngine.HOLD_NOT_FOUND.equals(status)) {
+                log.info("✅ 库存预占已归还: orderNo={}, status={}", message.getOrderNo(), status);
+                return;
+            }
+            // 预占订单找不到记录说明预占早已归还、处理标记已过期，不能再恢复一次
+            if (StockReservationEngine.HOLD_NOT_FOUND.equals(status) && Boolean.TRUE.equals(message.getStockHeld())) {
+                log.warn("⚠️ 订单的库存预占记录不存在，跳过库存恢复: orderNo={}", message.getOrderNo());
+                return;
+            }
+        }
+
+        // 已确认的预占或启用预占前的订单，按原方式恢复库存（通过StockService，会同时更新Redis和数据库）
+        stockService.increaseStock(message.getProductId(), message.getQuantity());
+
+        log.info("✅ 库存恢复成功: productId={}, quantity={}", 
+            message.getProductId(), message.getQuantity());
+    }
+
+    /**
+     * 按评论变更增量调整产品评分
+     */
+    private void applyRatingChange(ReviewChangedMessage message) {
+        // 不带评分的旧格式消息无法增量计算，直接按评论表对账该产品
+        Integer rating = message.getRating();
+        Integer oldRating = message.getOldRating();
+        int sumDelta;
+        int countDelta;
+        switch (String.valueOf(message.getChangeType())) {
+            case "CREATE":
+                if (rating == null) {
+                    reconcileRating(message.getProductId());
+                    return;
+                }
+                sumDelta = rating;
+                countDelta = 1;
+                break;
+            case "UPDATE":
+                if (rating == null || oldRating == null) {
+                    reconcileRating(message.getProductId());
+                    return;
+                }
+                sumDelta = rating - oldRating;
+                countDelta = 0;
+                break;
+            case "DELETE":
+                if (oldRating == null) {
+                    reconcileRating(message.getProductId());
+                    return;
+                }
+                sumDelta = -oldRating;
+                countDelta = -1;
+                break;
+            default:
+                log.warn("⚠️ 未知的评论变更类型: changeType={}", message.getChangeType());
+                return;
+        }
+
+        if (productMapper.adjustRating(message.getProductId(), sumDelta, countDelta) == 0) {
+            log.warn("⚠️ 产品不存在，无法更新评分: productId={}", message.getProductId());
+            return;
+        }
+        Product rated = productMapper.selectOne(new LambdaQueryWrapper<Product>()
+                .select(Product::getId, Product::getRating)
+                .eq(Product::getId, message.getProductId()));
+        productCache.evictStats(message.getProductId(), rated != null ? rated.getRating() : null);
+        log.info("✅ 产品评分更新成功: productId={}, sumDelta={}, countDelta={}", 
+            message.getProductId(), sumDelta, countDelta);
+    }
+
+    private void reconcileRating(Long productId) {
+        productRatingReconciler.reconcile(List.of(productId));
+        log.info("✅ 产品评分已按评论表对账: productId={}", productId);
+    }
+}
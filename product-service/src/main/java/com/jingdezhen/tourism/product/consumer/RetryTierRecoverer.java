@@ -0,0 +1,73 @@
+package com.jingdezhen.tourism.product.consumer;
+
+import com.jingdezhen.tourism.product.config.RetryQueueConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 消费失败的消息按已重试次数转入下一个延迟重试档位，全部档位用尽后转入停放队列
+ * 重试次数、原队列和最后一次异常记录在消息头中，消息ID不变，重试时仍按原消息去重
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RetryTierRecoverer implements MessageBatchRecoverer {
+
+    public static final String RETRY_COUNT_HEADER = "x-retry-count";
+    public static final String ORIGIN_QUEUE_HEADER = "x-origin-queue";
+    public static final String EXCEPTION_HEADER = "x-exception-message";
+
+    private static final int MAX_EXCEPTION_LENGTH = 500;
+
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${product.mq.retry.delays-seconds:5,30,300}")
+    private long[] delaysSeconds;
+
+    @Override
+    public void recover(Message message, Throwable cause) {
+        MessageProperties properties = message.getMessageProperties();
+        String originQueue = properties.getHeader(ORIGIN_QUEUE_HEADER);
+        if (originQueue == null) {
+            originQueue = properties.getConsumerQueue();
+        }
+        Object retried = properties.getHeader(RETRY_COUNT_HEADER);
+        int attempt = retried instanceof Number ? ((Number) retried).intValue() : 0;
+
+        properties.setHeader(RETRY_COUNT_HEADER, attempt + 1);
+        properties.setHeader(ORIGIN_QUEUE_HEADER, originQueue);
+        properties.setHeader(EXCEPTION_HEADER, exceptionMessage(cause));
+
+        if (attempt < delaysSeconds.length) {
+            rabbitTemplate.send(RetryQueueConfig.retryExchangeName(delaysSeconds[attempt]), originQueue, message);
+            log.warn("⚠️ 消息处理失败，{}秒后重试: queue={}, messageId={}, attempt={}",
+                    delaysSeconds[attempt], originQueue, properties.getMessageId(), attempt + 1);
+        } else {
+            rabbitTemplate.send("", RetryQueueConfig.PARKING_QUEUE, message);
+            log.error("❌ 消息重试次数用尽，已转入停放队列: queue={}, messageId={}, error={}",
+                    originQueue, properties.getMessageId(), exceptionMessage(cause));
+        }
+    }
+
+    @Override
+    public void recover(List<Message> messages, Throwable cause) {
+        messages.forEach(message -> recover(message, cause));
+    }
+
+    private static String exceptionMessage(Throwable cause) {
+        Throwable root = cause;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        String text = root.getClass().getSimpleName() + ": " + root.getMessage();
+        return text.length() > MAX_EXCEPTION_LENGTH ? text.substring(0, MAX_EXCEPTION_LENGTH) : text;
+    }
+}
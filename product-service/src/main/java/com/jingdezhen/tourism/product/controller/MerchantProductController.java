@@ -6,6 +6,8 @@ import com.jingdezhen.tourism.common.entity.Product;
 import com.jingdezhen.tourism.common.exception.BusinessException;
 import com.jingdezhen.tourism.common.utils.TokenUtil;
 import com.jingdezhen.tourism.common.vo.Result;
+import com.jingdezhen.tourism.product.cache.ProductCache;
+import com.jingdezhen.tourism.product.cache.ProductListCache;
 import com.jingdezhen.tourism.product.mapper.ProductMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.validation.annotation.Validated;
@@ -23,6 +25,8 @@ public class MerchantProductController {
 
     private final ProductMapper productMapper;
     private final TokenUtil tokenUtil;
+    private final ProductCache productCache;
+    private final ProductListCache productListCache;
 
     /**
      * 获取当前商户的产品列表（分页）
@@ -58,6 +62,8 @@ public class MerchantProductController {
             product.setStatus(0);
         }
         productMapper.insert(product);
+        productCache.evict(product.getId());
+        productListCache.invalidate(product);
         return Result.success("创建成功");
     }
 
@@ -77,6 +83,8 @@ public class MerchantProductController {
         product.setId(id);
         product.setMerchantId(merchantId);
         productMapper.updateById(product);
+        productCache.evict(id);
+        productListCache.invalidate(db, product);
         return Result.success("更新成功");
     }
 
@@ -94,6 +102,8 @@ public class MerchantProductController {
             throw new BusinessException("无权操作他人的产品");
         }
         productMapper.deleteById(id);
+        productCache.evict(id);
+        productListCache.invalidate(db);
         return Result.success("删除成功");
     }
 }
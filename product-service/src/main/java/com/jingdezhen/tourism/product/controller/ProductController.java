@@ -2,11 +2,14 @@ package com.jingdezhen.tourism.product.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jingdezhen.tourism.common.entity.Product;
+import com.jingdezhen.tourism.common.vo.CursorPage;
 import com.jingdezhen.tourism.common.vo.Result;
 import com.jingdezhen.tourism.product.service.ProductService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 /**
  * 产品Controller
  */
@@ -32,6 +35,20 @@ public class ProductController {
         return Result.success(page);
     }
 
+    /**
+     * 游标分页查询产品列表（按创建时间倒序，适用于无限滚动）
+     */
+    @GetMapping("/list/cursor")
+    public Result<CursorPage<Product>> getProductListByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) String region
+    ) {
+        CursorPage<Product> page = productService.getProductListByCursor(cursor, size, categoryId, region);
+        return Result.success(page);
+    }
+
     /**
      * 获取产品详情
      */
@@ -41,6 +58,15 @@ public class ProductController {
         return Result.success(product);
     }
 
+    /**
+     * 批量获取产品（供其他服务渲染列表使用，最多200个）
+     */
+    @GetMapping("/batch")
+    public Result<List<Product>> getProductsByIds(@RequestParam("ids") List<Long> ids) {
+        List<Product> products = productService.getProductsByIds(ids);
+        return Result.success(products);
+    }
+
     /**
      * 创建产品
      */
@@ -1,11 +1,18 @@
 package com.jingdezhen.tourism.product.controller;
 
+import com.jingdezhen.tourism.common.exception.BusinessException;
 import com.jingdezhen.tourism.common.utils.RedisLockUtil;
 import com.jingdezhen.tourism.common.vo.Result;
+import com.jingdezhen.tourism.common.vo.StockBatchResult;
 import com.jingdezhen.tourism.product.service.StockService;
+import com.jingdezhen.tourism.product.stock.StockReservationEngine;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * 库存管理Controller
  */
@@ -34,6 +41,15 @@ public class StockController {
         return Result.success(success);
     }
 
+    /**
+     * 预占库存，返回剩余库存（-1 库存不足，-3 商品不存在）
+     */
+    @PutMapping("/reserve")
+    public Result<Integer> reserveStock(@RequestBody StockRequest request) {
+        int remaining = stockService.reserveStock(request.getProductId(), request.getQuantity());
+        return Result.success(remaining);
+    }
+
     /**
      * 增加库存
      */
@@ -43,12 +59,75 @@ public class StockController {
         return Result.success("库存增加成功");
     }
 
+    /**
+     * 批量扣减库存（全部成功或全部不生效），返回各商品剩余库存
+     */
+    @PutMapping("/decrease/batch")
+    public Result<StockBatchResult> decreaseStockBatch(@RequestBody List<StockRequest> requests) {
+        StockBatchResult result = stockService.decreaseStockBatch(mergeItems(requests));
+        return Result.success(result);
+    }
+
+    /**
+     * 批量增加库存（批量扣减的补偿操作）
+     */
+    @PutMapping("/increase/batch")
+    public Result<StockBatchResult> increaseStockBatch(@RequestBody List<StockRequest> requests) {
+        StockBatchResult result = stockService.increaseStockBatch(mergeItems(requests));
+        return Result.success(result);
+    }
+
+    /**
+     * 为订单预占库存（超时未支付自动归还），返回剩余库存
+     */
+    @PostMapping("/hold")
+    public Result<Integer> holdStock(@RequestBody StockRequest request) {
+        int remaining = stockService.holdStock(request.getOrderNo(), request.getProductId(), request.getQuantity());
+        return Result.success(remaining);
+    }
+
+    /**
+     * 确认订单的库存预占
+     */
+    @PutMapping("/hold/{orderNo}/commit")
+    public Result<String> commitHold(@PathVariable String orderNo) {
+        return Result.success("操作成功", stockService.commitHold(orderNo));
+    }
+
+    /**
+     * 归还订单的库存预占
+     */
+    @PutMapping("/hold/{orderNo}/release")
+    public Result<String> releaseHold(@PathVariable String orderNo) {
+        return Result.success("操作成功", stockService.releaseHold(orderNo, StockReservationEngine.HOLD_RELEASED));
+    }
+
+    /**
+     * 合并同一商品的多条请求
+     */
+    private Map<Long, Integer> mergeItems(List<StockRequest> requests) {
+        Map<Long, Integer> items = new LinkedHashMap<>();
+        if (requests != null) {
+            for (StockRequest request : requests) {
+                if (request == null || request.getProductId() == null) {
+                    throw new BusinessException("商品ID不能为空");
+                }
+                if (request.getQuantity() == null || request.getQuantity() <= 0) {
+                    throw new BusinessException("商品数量必须大于0: productId=" + request.getProductId());
+                }
+                items.merge(request.getProductId(), request.getQuantity(), Integer::sum);
+            }
+        }
+        return items;
+    }
+
     /**
      * 库存请求DTO
      */
     public static class StockRequest {
         private Long productId;
         private Integer quantity;
+        private String orderNo;
 
         public Long getProductId() {
             return productId;
@@ -65,6 +144,14 @@ public class StockController {
         public void setQuantity(Integer quantity) {
             this.quantity = quantity;
         }
+
+        public String getOrderNo() {
+            return orderNo;
+        }
+
+        public void setOrderNo(String orderNo) {
+            this.orderNo = orderNo;
+        }
     }
 }
 
@@ -1,10 +1,10 @@
 package com.jingdezhen.tourism.product.feign;
 
-import com.jingdezhen.tourism.common.entity.Review;
+import com.jingdezhen.tourism.common.vo.ProductRatingStatVO;
 import com.jingdezhen.tourism.common.vo.Result;
 import org.springframework.cloud.openfeign.FeignClient;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 
 import java.util.List;
 
@@ -15,9 +15,8 @@ import java.util.List;
 public interface ReviewServiceClient {
 
     /**
-     * 获取产品的所有评论（用于计算评分）
+     * 批量统计产品评分总和与评论数（用于评分对账）
      */
-    @GetMapping("/product/all")
-    Result<List<Review>> getProductAllReviews(@RequestParam Long productId);
+    @PostMapping("/product/rating-stats")
+    Result<List<ProductRatingStatVO>> getRatingStats(@RequestBody List<Long> productIds);
 }
-
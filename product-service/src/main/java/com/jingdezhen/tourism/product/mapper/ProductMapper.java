@@ -2,10 +2,28 @@ package com.jingdezhen.tourism.product.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.jingdezhen.tourism.common.entity.Product;
+import org.apache.ibatis.annotations.Param;
 
 /**
  * 产品Mapper接口
  */
 public interface ProductMapper extends BaseMapper<Product> {
-}
 
+    /**
+     * 增量调整评分总和与评论数，并重新计算评分
+     */
+    int adjustRating(@Param("productId") Long productId, @Param("sumDelta") int sumDelta,
+                     @Param("countDelta") int countDelta);
+
+    /**
+     * 对账修正评分（CAS：总和与数量仍为expected时才更新）
+     */
+    int reconcileRating(@Param("productId") Long productId, @Param("ratingSum") int ratingSum,
+                        @Param("ratingCount") int ratingCount, @Param("expectedSum") int expectedSum,
+                        @Param("expectedCount") int expectedCount);
+
+    /**
+     * 累加销量
+     */
+    int incrementSales(@Param("productId") Long productId, @Param("quantity") int quantity);
+}
@@ -0,0 +1,174 @@
+package com.jingdezhen.tourism.product.rating;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.jingdezhen.tourism.common.entity.Product;
+import com.jingdezhen.tourism.common.utils.RedisLockUtil;
+import com.jingdezhen.tourism.common.vo.ProductRatingStatVO;
+import com.jingdezhen.tourism.common.vo.Result;
+import com.jingdezhen.tourism.product.cache.ProductCache;
+import com.jingdezhen.tourism.product.feign.ReviewServiceClient;
+import com.jingdezhen.tourism.product.mapper.ProductMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 产品评分对账
+ * 评分由评论变更消息增量维护，消息重复投递或丢失会产生偏差；
+ * 定时按主键分批向评论服务批量查询真实的评分总和与评论数，与产品表不一致时修正。
+ * 修正以读取时的总和与数量为条件，期间有增量更新的产品留待下一轮；
+ * 评论在 settle-seconds 内有变更的产品也留待下一轮，其变更消息可能还在发件箱中未投递，此时修正会被重复计入。
+ * 首次运行同时完成历史数据的初始化，多实例时只有持锁实例执行
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductRatingReconciler {
+
+    private static final String LOCK_KEY = "product:rating:reconcile";
+
+    private final ProductMapper productMapper;
+    private final ReviewServiceClient reviewServiceClient;
+    private final ProductCache productCache;
+    private final RedisLockUtil redisLockUtil;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "product-rating-reconciler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${product.rating-reconcile.enabled:true}")
+    private boolean enabled;
+
+    @Value("${product.rating-reconcile.interval-minutes:1440}")
+    private long intervalMinutes;
+
+    @Value("${product.rating-reconcile.batch-size:200}")
+    private int batchSize;
+
+    @Value("${product.rating-reconcile.settle-seconds:600}")
+    private long settleSeconds;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::reconcileAll, 1, intervalMinutes, TimeUnit.MINUTES);
+        log.info("✅ 产品评分对账已启动: interval={}min, batchSize={}", intervalMinutes, batchSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 对账全部产品
+     */
+    public void reconcileAll() {
+        String lockValue = redisLockUtil.tryLock(LOCK_KEY, 1, 3600);
+        if (lockValue == null) {
+            return;
+        }
+        long lastId = 0;
+        int fixed = 0;
+        try {
+            List<Product> batch;
+            do {
+                batch = productMapper.selectList(ratingQuery()
+                        .gt(Product::getId, lastId)
+                        .orderByAsc(Product::getId)
+                        .last("LIMIT " + batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+                fixed += reconcileBatch(batch);
+            } while (batch.size() == batchSize);
+            if (fixed > 0) {
+                log.warn("⚠️ 产品评分对账完成，已修正偏差: fixed={}", fixed);
+            }
+        } catch (Exception e) {
+            log.error("❌ 产品评分对账失败: lastId={}, error={}", lastId, e.getMessage(), e);
+        } finally {
+            redisLockUtil.releaseLock(LOCK_KEY, lockValue);
+        }
+    }
+
+    /**
+     * 对账指定产品（用于无法增量处理的消息），评论近期有变更时留给定时对账
+     */
+    public void reconcile(List<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        reconcileBatch(productMapper.selectList(ratingQuery().in(Product::getId, productIds)));
+    }
+
+    private LambdaQueryWrapper<Product> ratingQuery() {
+        return new LambdaQueryWrapper<Product>()
+                .select(Product::getId, Product::getRatingSum, Product::getRatingCount);
+    }
+
+    /**
+     * 对账一批产品
+     *
+     * @return 修正的产品数
+     */
+    private int reconcileBatch(List<Product> products) {
+        if (products.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = products.stream().map(Product::getId).collect(Collectors.toList());
+        Result<List<ProductRatingStatVO>> result = reviewServiceClient.getRatingStats(ids);
+        if (result.getCode() != 200 || result.getData() == null) {
+            throw new IllegalStateException("查询评分统计失败: " + result.getMessage());
+        }
+        Map<Long, ProductRatingStatVO> stats = result.getData().stream()
+                .collect(Collectors.toMap(ProductRatingStatVO::getProductId, Function.identity()));
+
+        LocalDateTime settledBefore = LocalDateTime.now().minusSeconds(settleSeconds);
+        int fixed = 0;
+        for (Product product : products) {
+            ProductRatingStatVO stat = stats.get(product.getId());
+            if (stat != null && stat.getLastChangeTime() != null && stat.getLastChangeTime().isAfter(settledBefore)) {
+                log.debug("产品评论近期有变更，暂不对账: productId={}, lastChangeTime={}",
+                        product.getId(), stat.getLastChangeTime());
+                continue;
+            }
+            int expectedSum = stat != null ? stat.getRatingSum() : 0;
+            int expectedCount = stat != null ? stat.getRatingCount() : 0;
+            int currentSum = product.getRatingSum() != null ? product.getRatingSum() : 0;
+            int currentCount = product.getRatingCount() != null ? product.getRatingCount() : 0;
+            if (expectedSum == currentSum && expectedCount == currentCount) {
+                continue;
+            }
+            if (productMapper.reconcileRating(product.getId(), expectedSum, expectedCount, currentSum, currentCount) > 0) {
+                BigDecimal rating = expectedCount > 0
+                        ? BigDecimal.valueOf(expectedSum).divide(BigDecimal.valueOf(expectedCount), 1, RoundingMode.HALF_UP)
+                        : BigDecimal.valueOf(5.0);
+                productCache.evictStats(product.getId(), rating);
+                fixed++;
+                log.info("✅ 产品评分已修正: productId={}, sum {} -> {}, count {} -> {}",
+                        product.getId(), currentSum, expectedSum, currentCount, expectedCount);
+            }
+        }
+        return fixed;
+    }
+}
@@ -0,0 +1,388 @@
+package com.jingdezhen.tourism.product.search;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.jingdezhen.tourism.common.entity.Product;
+import com.jingdezhen.tourism.product.mapper.ProductMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 产品全文检索（进程内倒排索引）
+ * 索引标题、标签、特色和描述，中文按单字和相邻二元组切分，字母数字按整词切分并额外索引其前缀
+ * （至少2个字符，如 kilns 可被 kiln 命中、QH2024A 可被 qh2024 命中；词中间的片段不匹配），前缀按半权计分；
+ * 查询时所有词元都需命中，按字段权重累加得到相关度。
+ * 启动后全量构建，之后按产品变更逐个刷新；构建期间刷新过的产品在构建结束后重新刷新，避免被构建读到的旧数据覆盖
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductSearchIndex {
+
+    private static final float TITLE_WEIGHT = 4f;
+    private static final float TAGS_WEIGHT = 3f;
+    private static final float FEATURES_WEIGHT = 2f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    /**
+     * 前缀词元相对整词的权重
+     */
+    private static final float PREFIX_WEIGHT_RATIO = 0.5f;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_LENGTH = 20;
+
+    private static final int BUILD_BATCH_SIZE = 1000;
+
+    private final ProductMapper productMapper;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 词元 -> (产品ID -> 权重)
+     */
+    private final Map<String, Map<Long, Float>> postings = new HashMap<>();
+
+    /**
+     * 产品ID -> 已索引的产品摘要
+     */
+    private final Map<Long, IndexedProduct> documents = new HashMap<>();
+
+    private volatile boolean ready = false;
+
+    private volatile boolean building = false;
+
+    /**
+     * 全量构建期间刷新过的产品ID
+     */
+    private final Set<Long> refreshedDuringBuild = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 索引是否已完成全量构建（未完成时调用方应回退到数据库查询）
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 启动完成后全量构建索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        long lastId = 0;
+        int count = 0;
+        building = true;
+        try {
+            List<Product> batch;
+            do {
+                batch = productMapper.selectList(new LambdaQueryWrapper<Product>()
+                        .select(Product::getId, Product::getCategoryId, Product::getRegion, Product::getTitle,
+                                Product::getDescription, Product::getTags, Product::getFeatures,
+                                Product::getStatus, Product::getRecommend, Product::getRating)
+                        .gt(Product::getId, lastId)
+                        .orderByAsc(Product::getId)
+                        .last("LIMIT " + BUILD_BATCH_SIZE));
+                for (Product product : batch) {
+                    index(product);
+                    lastId = product.getId();
+                }
+                count += batch.size();
+            } while (batch.size() == BUILD_BATCH_SIZE);
+            int replayed = replayRefreshed();
+            ready = true;
+            log.info("✅ 产品检索索引构建完成: products={}, tokens={}, replayed={}, cost={}ms",
+                    count, postings.size(), replayed, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("❌ 产品检索索引构建失败，关键词搜索将回退到数据库: error={}", e.getMessage(), e);
+        } finally {
+            building = false;
+            refreshedDuringBuild.clear();
+        }
+    }
+
+    /**
+     * 重新刷新构建期间变更过的产品（构建批次可能在刷新之前读到旧数据并覆盖了刷新结果）
+     */
+    private int replayRefreshed() {
+        int replayed = 0;
+        while (!refreshedDuringBuild.isEmpty()) {
+            for (Long productId : List.copyOf(refreshedDuringBuild)) {
+                refreshedDuringBuild.remove(productId);
+                reload(productId);
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * 产品变更后刷新该产品的索引（产品已删除时移除）
+     */
+    public void refresh(Long productId) {
+        if (building) {
+            refreshedDuringBuild.add(productId);
+        }
+        reload(productId);
+    }
+
+    private void reload(Long productId) {
+        Product product = productMapper.selectById(productId);
+        if (product == null) {
+            remove(productId);
+        } else {
+            index(product);
+        }
+    }
+
+    /**
+     * 仅评分变化时就地更新索引中的评分，不回查数据库（产品未索引时忽略）
+     */
+    public void updateRating(Long productId, double rating) {
+        if (building) {
+            refreshedDuringBuild.add(productId);
+        }
+        lock.writeLock().lock();
+        try {
+            documents.computeIfPresent(productId, (id, doc) -> doc.withRating(rating));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 关键词检索
+     * 排序：推荐优先，其次相关度，再按评分
+     */
+    public Page<Product> search(String keyword, Long categoryId, String region, Long current, Long size) {
+        List<String> queryTokens = queryTokens(keyword);
+        Page<Product> page = new Page<>(current, size);
+        if (queryTokens.isEmpty()) {
+            page.setRecords(Collections.emptyList());
+            return page;
+        }
+
+        List<Long> pageIds;
+        lock.readLock().lock();
+        try {
+            Map<Long, Float> scores = match(queryTokens);
+            List<IndexedProduct> hits = new ArrayList<>(scores.size());
+            for (Map.Entry<Long, Float> entry : scores.entrySet()) {
+                IndexedProduct doc = documents.get(entry.getKey());
+                if (doc != null && doc.matches(categoryId, region)) {
+                    hits.add(doc);
+                }
+            }
+            hits.sort(Comparator.comparingInt(IndexedProduct::recommend).reversed()
+                    .thenComparing(doc -> scores.get(doc.id()), Comparator.reverseOrder())
+                    .thenComparing(Comparator.comparingDouble(IndexedProduct::rating).reversed())
+                    .thenComparing(IndexedProduct::id, Comparator.reverseOrder()));
+
+            page.setTotal(hits.size());
+            int from = (int) Math.min((current - 1) * size, hits.size());
+            int to = (int) Math.min(from + size, hits.size());
+            pageIds = hits.subList(from, to).stream().map(IndexedProduct::id).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (pageIds.isEmpty()) {
+            page.setRecords(Collections.emptyList());
+            return page;
+        }
+        Map<Long, Product> products = productMapper.selectBatchIds(pageIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        page.setRecords(pageIds.stream().map(products::get).filter(p -> p != null).toList());
+        return page;
+    }
+
+    /**
+     * 求所有查询词元的交集并累加权重
+     */
+    private Map<Long, Float> match(List<String> queryTokens) {
+        List<Map<Long, Float>> lists = new ArrayList<>(queryTokens.size());
+        for (String token : queryTokens) {
+            Map<Long, Float> list = postings.get(token);
+            if (list == null) {
+                return Collections.emptyMap();
+            }
+            lists.add(list);
+        }
+        // 从最短的倒排表开始求交集
+        lists.sort(Comparator.comparingInt(Map::size));
+
+        Map<Long, Float> scores = new HashMap<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !scores.isEmpty(); i++) {
+            Map<Long, Float> list = lists.get(i);
+            scores.entrySet().removeIf(entry -> !list.containsKey(entry.getKey()));
+            scores.replaceAll((id, score) -> score + list.get(id));
+        }
+        return scores;
+    }
+
+    private void index(Product product) {
+        Map<String, Float> weights = new HashMap<>();
+        addField(weights, product.getTitle(), TITLE_WEIGHT);
+        addField(weights, product.getTags(), TAGS_WEIGHT);
+        addField(weights, product.getFeatures(), FEATURES_WEIGHT);
+        addField(weights, product.getDescription(), DESCRIPTION_WEIGHT);
+
+        IndexedProduct doc = new IndexedProduct(product.getId(), product.getCategoryId(), product.getRegion(),
+                product.getStatus() != null ? product.getStatus() : 0,
+                product.getRecommend() != null ? product.getRecommend() : 0,
+                product.getRating() != null ? product.getRating().doubleValue() : 0d,
+                weights.keySet());
+
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(product.getId());
+            weights.forEach((token, weight) ->
+                    postings.computeIfAbsent(token, t -> new HashMap<>()).put(product.getId(), weight));
+            documents.put(product.getId(), doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeUnlocked(Long productId) {
+        IndexedProduct old = documents.remove(productId);
+        if (old == null) {
+            return;
+        }
+        for (String token : old.tokens()) {
+            Map<Long, Float> list = postings.get(token);
+            if (list != null) {
+                list.remove(productId);
+                if (list.isEmpty()) {
+                    postings.remove(token);
+                }
+            }
+        }
+    }
+
+    private static void addField(Map<String, Float> weights, String text, float fieldWeight) {
+        if (!StringUtils.hasText(text)) {
+            return;
+        }
+        tokenize(text, false, (token, prefix) ->
+                weights.merge(token, prefix ? fieldWeight * PREFIX_WEIGHT_RATIO : fieldWeight, Float::sum));
+    }
+
+    /**
+     * 查询词元：中文片段只有一个字时用单字，否则用二元组；字母数字超过最大前缀长度时截断为前缀；重复词元去重
+     */
+    static List<String> queryTokens(String keyword) {
+        return StringUtils.hasText(keyword) ? new ArrayList<>(new LinkedHashSet<>(tokenize(keyword, true))) : List.of();
+    }
+
+    /**
+     * 切分词元
+     *
+     * @param query 是否为查询（查询时中文片段不再输出单字，避免放宽匹配条件；字母数字不输出前缀）
+     */
+    static List<String> tokenize(String text, boolean query) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, query, (token, prefix) -> tokens.add(token));
+        return tokens;
+    }
+
+    private static void tokenize(String text, boolean query, BiConsumer<String, Boolean> sink) {
+        List<String> cjkTokens = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        int cjkStart = -1;
+        int[] codePoints = text.toLowerCase().codePoints().toArray();
+        for (int i = 0; i <= codePoints.length; i++) {
+            int cp = i < codePoints.length ? codePoints[i] : ' ';
+            boolean cjk = Character.UnicodeScript.of(cp) == Character.UnicodeScript.HAN;
+            boolean alnum = !cjk && Character.isLetterOrDigit(cp);
+
+            if (!cjk && cjkStart >= 0) {
+                addCjkTokens(cjkTokens, codePoints, cjkStart, i, query);
+                cjkTokens.forEach(token -> sink.accept(token, false));
+                cjkTokens.clear();
+                cjkStart = -1;
+            } else if (cjk && cjkStart < 0) {
+                cjkStart = i;
+            }
+
+            if (alnum) {
+                word.appendCodePoint(cp);
+            } else if (word.length() > 0) {
+                addWordTokens(word.toString(), query, sink);
+                word.setLength(0);
+            }
+        }
+    }
+
+    private static void addWordTokens(String word, boolean query, BiConsumer<String, Boolean> sink) {
+        int length = word.codePointCount(0, word.length());
+        if (query) {
+            sink.accept(length > MAX_PREFIX_LENGTH ? prefix(word, MAX_PREFIX_LENGTH) : word, false);
+            return;
+        }
+        sink.accept(word, false);
+        for (int i = MIN_PREFIX_LENGTH; i < length && i <= MAX_PREFIX_LENGTH; i++) {
+            sink.accept(prefix(word, i), true);
+        }
+    }
+
+    private static String prefix(String word, int codePoints) {
+        return word.substring(0, word.offsetByCodePoints(0, codePoints));
+    }
+
+    private static void addCjkTokens(List<String> tokens, int[] codePoints, int start, int end, boolean query) {
+        int length = end - start;
+        if (!query || length == 1) {
+            for (int i = start; i < end; i++) {
+                tokens.add(new String(codePoints, i, 1));
+            }
+        }
+        for (int i = start; i + 1 < end; i++) {
+            tokens.add(new String(codePoints, i, 2));
+        }
+    }
+
+    /**
+     * 已索引的产品摘要（筛选和排序所需字段）
+     */
+    private record IndexedProduct(Long id, Long categoryId, String region, int status, int recommend,
+                                  double rating, Set<String> tokens) {
+
+        IndexedProduct withRating(double rating) {
+            return new IndexedProduct(id, categoryId, region, status, recommend, rating, tokens);
+        }
+
+        boolean matches(Long categoryId, String region) {
+            return status == 1
+                    && (categoryId == null || categoryId.equals(this.categoryId))
+                    && (!StringUtils.hasText(region) || region.equals(this.region));
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.jingdezhen.tourism.product.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jingdezhen.tourism.common.entity.Product;
+import com.jingdezhen.tourism.common.vo.CursorPage;
+
+import java.util.List;
 
 /**
  * 产品Service接口
@@ -13,11 +16,21 @@ public interface ProductService {
      */
     Page<Product> getProductList(Long current, Long size, Long categoryId, String region, String keyword);
 
+    /**
+     * 游标分页查询产品列表（按创建时间倒序，不查询总数）
+     */
+    CursorPage<Product> getProductListByCursor(String cursor, Integer size, Long categoryId, String region);
+
     /**
      * 根据ID获取产品详情
      */
     Product getProductById(Long id);
 
+    /**
+     * 根据ID批量获取产品（按传入顺序返回，不存在的产品跳过）
+     */
+    List<Product> getProductsByIds(List<Long> ids);
+
     /**
      * 创建产品
      */
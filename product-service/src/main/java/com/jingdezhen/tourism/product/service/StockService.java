@@ -1,5 +1,9 @@
 package com.jingdezhen.tourism.product.service;
 
+import com.jingdezhen.tourism.common.vo.StockBatchResult;
+
+import java.util.Map;
+
 /**
  * 库存服务接口
  */
@@ -15,11 +19,54 @@ public interface StockService {
      */
     boolean decreaseStock(Long productId, Integer quantity);
 
+    /**
+     * 预占库存并返回剩余数量（单次Redis调用）
+     *
+     * @return 剩余库存；-1 库存不足；-3 商品不存在
+     */
+    int reserveStock(Long productId, Integer quantity);
+
     /**
      * 增加库存（用于取消订单时恢复库存）
      */
     void increaseStock(Long productId, Integer quantity);
 
+    /**
+     * 批量扣减库存（全部成功或全部不生效）
+     *
+     * @param items 商品ID -> 扣减数量
+     */
+    StockBatchResult decreaseStockBatch(Map<Long, Integer> items);
+
+    /**
+     * 批量增加库存（用于批量扣减后的补偿）
+     *
+     * @param items 商品ID -> 增加数量
+     */
+    StockBatchResult increaseStockBatch(Map<Long, Integer> items);
+
+    /**
+     * 为订单预占库存，超时未确认时自动归还
+     *
+     * @return 剩余库存
+     */
+    int holdStock(String orderNo, Long productId, Integer quantity);
+
+    /**
+     * 确认订单的库存预占（支付成功）
+     *
+     * @return COMMITTED / EXPIRED / RELEASED / NOT_FOUND
+     */
+    String commitHold(String orderNo);
+
+    /**
+     * 归还订单的库存预占
+     *
+     * @param reason EXPIRED（超时） / RELEASED（取消）
+     * @return 本次归还的原因；已处理过时返回当时的结果；无预占记录返回 NOT_FOUND
+     */
+    String releaseHold(String orderNo, String reason);
+
     /**
      * 初始化商品库存到Redis
      */
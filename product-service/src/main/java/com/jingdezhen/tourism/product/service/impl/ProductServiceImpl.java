@@ -1,12 +1,15 @@
 package com.jingdezhen.tourism.product.service.impl;
 
-import com.alibaba.fastjson2.JSON;
-import com.alibaba.fastjson2.TypeReference;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jingdezhen.tourism.common.entity.Product;
 import com.jingdezhen.tourism.common.exception.BusinessException;
+import com.jingdezhen.tourism.common.utils.PageCursor;
+import com.jingdezhen.tourism.common.vo.CursorPage;
+import com.jingdezhen.tourism.product.cache.ProductCache;
+import com.jingdezhen.tourism.product.cache.ProductListCache;
 import com.jingdezhen.tourism.product.mapper.ProductMapper;
+import com.jingdezhen.tourism.product.search.ProductSearchIndex;
 import com.jingdezhen.tourism.product.service.ProductService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,8 +17,10 @@ import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * 产品Service实现类
@@ -27,22 +32,28 @@ public class ProductServiceImpl implements ProductService {
 
     private final ProductMapper productMapper;
     private final StringRedisTemplate stringRedisTemplate;
+    private final ProductCache productCache;
+    private final ProductListCache productListCache;
+    private final ProductSearchIndex productSearchIndex;
 
-    private static final String PRODUCT_LIST_PREFIX = "product:list:";
-    private static final long PRODUCT_LIST_EXPIRE = 60 * 60 * 24; // 1天
+    private static final int MAX_BATCH_IDS = 200;
 
     @Override
     public Page<Product> getProductList(Long current, Long size, Long categoryId, String region, String keyword) {
-        // 生成缓存Key
-        String cacheKey = generateCacheKey(current, size, categoryId, region, keyword);
-        
-        // 尝试从缓存获取
+        // 关键词搜索走倒排索引，不占用列表缓存；索引未就绪时回退到数据库LIKE查询
+        if (StringUtils.hasText(keyword) && productSearchIndex.isReady()) {
+            return productSearchIndex.search(keyword.trim(), categoryId, region, current, size);
+        }
+
+        // 生成缓存Key并尝试从缓存获取
+        String cacheKey = null;
         if (stringRedisTemplate != null) {
             try {
-                String cachedData = stringRedisTemplate.opsForValue().get(cacheKey);
-                if (cachedData != null) {
+                cacheKey = productListCache.cacheKey(current, size, categoryId, region, keyword);
+                Page<Product> cached = productListCache.get(cacheKey);
+                if (cached != null) {
                     log.debug("✅ 从缓存获取产品列表: key={}", cacheKey);
-                    return JSON.parseObject(cachedData, new TypeReference<Page<Product>>() {});
+                    return cached;
                 }
             } catch (Exception e) {
                 log.warn("⚠️ 读取缓存失败，将查询数据库: key={}, error={}", cacheKey, e.getMessage());
@@ -82,15 +93,9 @@ public class ProductServiceImpl implements ProductService {
         Page<Product> result = productMapper.selectPage(page, wrapper);
         
         // 写入缓存
-        if (stringRedisTemplate != null) {
+        if (cacheKey != null) {
             try {
-                String jsonData = JSON.toJSONString(result);
-                stringRedisTemplate.opsForValue().set(
-                    cacheKey, 
-                    jsonData, 
-                    PRODUCT_LIST_EXPIRE, 
-                    TimeUnit.SECONDS
-                );
+                productListCache.put(cacheKey, result);
                 log.debug("✅ 产品列表已缓存: key={}, size={}", cacheKey, result.getRecords().size());
             } catch (Exception e) {
                 log.warn("⚠️ 写入缓存失败: key={}, error={}", cacheKey, e.getMessage());
@@ -100,71 +105,77 @@ public class ProductServiceImpl implements ProductService {
         return result;
     }
     
-    /**
-     * 生成缓存Key
-     */
-    private String generateCacheKey(Long current, Long size, Long categoryId, String region, String keyword) {
-        StringBuilder key = new StringBuilder(PRODUCT_LIST_PREFIX);
-        key.append(categoryId != null ? categoryId : "all");
-        key.append(":");
-        key.append(StringUtils.hasText(region) ? region : "all");
-        key.append(":");
-        key.append(StringUtils.hasText(keyword) ? keyword.hashCode() : "all");
-        key.append(":");
-        key.append(current);
-        key.append(":");
-        key.append(size);
-        return key.toString();
+    @Override
+    public CursorPage<Product> getProductListByCursor(String cursor, Integer size, Long categoryId, String region) {
+        int pageSize = PageCursor.normalizeSize(size);
+        LambdaQueryWrapper<Product> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(Product::getStatus, 1);
+        if (categoryId != null) {
+            wrapper.eq(Product::getCategoryId, categoryId);
+        }
+        if (StringUtils.hasText(region)) {
+            wrapper.eq(Product::getRegion, region);
+        }
+        PageCursor.seek(wrapper, Product::getCreateTime, Product::getId, cursor, pageSize);
+        return CursorPage.of(productMapper.selectList(wrapper), pageSize, Product::getCreateTime, Product::getId);
     }
 
     @Override
     public Product getProductById(Long id) {
-        Product product = productMapper.selectById(id);
+        Product product = productCache.get(id);
         if (product == null) {
             throw new BusinessException("产品不存在");
         }
         return product;
     }
 
+    @Override
+    public List<Product> getProductsByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinctIds.size() > MAX_BATCH_IDS) {
+            throw new BusinessException("单次最多查询" + MAX_BATCH_IDS + "个产品");
+        }
+        Map<Long, Product> products = productCache.getAll(distinctIds);
+        return distinctIds.stream().map(products::get).filter(Objects::nonNull).toList();
+    }
+
     @Override
     public void createProduct(Product product) {
         product.setStatus(1);
         product.setSales(0);
         product.setRating(java.math.BigDecimal.valueOf(5.0));
         productMapper.insert(product);
-        clearProductListCache();
+        productCache.evict(product.getId());
+        clearProductListCache(product);
     }
 
     @Override
     public void updateProduct(Product product) {
+        // 修改前的分类、区域也需要失效
+        Product before = productMapper.selectById(product.getId());
         productMapper.updateById(product);
-        clearProductListCache();
+        productCache.evict(product.getId());
+        clearProductListCache(before, product);
     }
 
     @Override
     public void deleteProduct(Long id) {
+        Product before = productMapper.selectById(id);
         productMapper.deleteById(id);
-        clearProductListCache();
+        productCache.evict(id);
+        clearProductListCache(before);
     }
     
     /**
-     * 清除产品列表缓存
+     * 清除受影响的产品列表缓存（递增版本号）
      */
-    private void clearProductListCache() {
+    private void clearProductListCache(Product... products) {
         if (stringRedisTemplate == null) {
             return;
         }
-        
-        try {
-            String pattern = PRODUCT_LIST_PREFIX + "*";
-            Set<String> keys = stringRedisTemplate.keys(pattern);
-            if (keys != null && !keys.isEmpty()) {
-                stringRedisTemplate.delete(keys);
-                log.debug("✅ 已清除产品列表缓存: pattern={}, count={}", pattern, keys.size());
-            }
-        } catch (Exception e) {
-            log.warn("⚠️ 清除产品列表缓存失败: error={}", e.getMessage());
-        }
+        productListCache.invalidate(products);
     }
 }
-
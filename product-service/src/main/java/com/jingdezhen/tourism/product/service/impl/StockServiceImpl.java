@@ -1,16 +1,21 @@
 package com.jingdezhen.tourism.product.service.impl;
 
 import com.jingdezhen.tourism.common.entity.Product;
+import com.jingdezhen.tourism.common.exception.BusinessException;
 import com.jingdezhen.tourism.common.utils.RedisLockUtil;
+import com.jingdezhen.tourism.common.vo.StockBatchResult;
 import com.jingdezhen.tourism.product.mapper.ProductMapper;
 import com.jingdezhen.tourism.product.service.StockService;
+import com.jingdezhen.tourism.product.stock.StockReservationEngine;
+import com.jingdezhen.tourism.product.stock.StockWriteBehindFlusher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
-import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -25,31 +30,15 @@ public class StockServiceImpl implements StockService {
     private final ProductMapper productMapper;
     private final RedisLockUtil redisLockUtil;
     private final StringRedisTemplate stringRedisTemplate;
+    private final StockReservationEngine stockReservationEngine;
+    private final StockWriteBehindFlusher stockWriteBehindFlusher;
 
-    private static final String STOCK_KEY_PREFIX = "stock:product:";
-    private static final long STOCK_CACHE_EXPIRE = 7 * 24 * 60 * 60; // 7天过期
+    private static final String STOCK_KEY_PREFIX = StockReservationEngine.STOCK_KEY_PREFIX;
+    private static final long STOCK_CACHE_EXPIRE = StockReservationEngine.STOCK_CACHE_EXPIRE;
+    private static final int MAX_BATCH_SIZE = 100;
 
-    /**
-     * 扣减库存的Lua脚本（原子操作）
-     */
-    private static final String DECREASE_STOCK_SCRIPT = 
-        "local stock = tonumber(redis.call('get', KEYS[1]) or '0') " +
-        "local quantity = tonumber(ARGV[1]) " +
-        "if stock >= quantity then " +
-        "  redis.call('decrby', KEYS[1], quantity) " +
-        "  return 1 " +
-        "else " +
-        "  return 0 " +
-        "end";
-
-    /**
-     * 增加库存的Lua脚本（原子操作）
-     */
-    private static final String INCREASE_STOCK_SCRIPT = 
-        "local stock = tonumber(redis.call('get', KEYS[1]) or '0') " +
-        "local quantity = tonumber(ARGV[1]) " +
-        "redis.call('incrby', KEYS[1], quantity) " +
-        "return 1";
+    @Value("${stock.hold.ttl-seconds:900}")
+    private long holdTtlSeconds;
 
     @Override
     public Integer initStock(Long productId) {
@@ -113,43 +102,33 @@ public class StockServiceImpl implements StockService {
 
     @Override
     public boolean decreaseStock(Long productId, Integer quantity) {
+        return reserveStock(productId, quantity) >= 0;
+    }
+
+    @Override
+    public int reserveStock(Long productId, Integer quantity) {
         if (stringRedisTemplate == null) {
             log.warn("⚠️ Redis未配置，使用数据库扣减库存: productId={}, quantity={}", productId, quantity);
-            return decreaseStockFromDB(productId, quantity);
+            return decreaseStockFromDB(productId, quantity) ? 0 : (int) StockReservationEngine.INSUFFICIENT;
         }
 
-        // 先确保库存已初始化
-        Integer currentStock = getStock(productId);
-        if (currentStock == null || currentStock < 0) {
-            log.warn("⚠️ 商品不存在或库存初始化失败: productId={}", productId);
-            return false;
-        }
-
-        String stockKey = STOCK_KEY_PREFIX + productId;
-
-        // 使用Lua脚本原子性扣减库存
-        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
-        script.setScriptText(DECREASE_STOCK_SCRIPT);
-        script.setResultType(Long.class);
-
-        Long result = stringRedisTemplate.execute(script, 
-            Collections.singletonList(stockKey), 
-            String.valueOf(quantity));
-
-        boolean success = result != null && result == 1;
+        stockWriteBehindFlusher.checkCapacity();
+        // 懒加载、校验与扣减在一次Redis调用中完成
+        long remaining = stockReservationEngine.reserve(productId, quantity);
 
-        if (success) {
+        if (remaining >= 0) {
             log.info("✅ Redis库存扣减成功: productId={}, quantity={}, 剩余库存={}", 
-                productId, quantity, getStock(productId));
+                productId, quantity, remaining);
 
-            // 异步同步到数据库
-            syncStockToDBAsync(productId);
+            // 登记写回，由后台批量同步到数据库
+            stockWriteBehindFlusher.markDirty(productId);
+        } else if (remaining == StockReservationEngine.PRODUCT_NOT_FOUND) {
+            log.warn("⚠️ 商品不存在或库存初始化失败: productId={}", productId);
         } else {
-            log.warn("⚠️ Redis库存扣减失败（库存不足）: productId={}, quantity={}, 当前库存={}", 
-                productId, quantity, currentStock);
+            log.warn("⚠️ Redis库存扣减失败（库存不足）: productId={}, quantity={}", productId, quantity);
         }
 
-        return success;
+        return (int) remaining;
     }
 
     @Override
@@ -160,22 +139,109 @@ public class StockServiceImpl implements StockService {
             return;
         }
 
-        String stockKey = STOCK_KEY_PREFIX + productId;
+        long current = stockReservationEngine.release(productId, quantity);
+        if (current == StockReservationEngine.PRODUCT_NOT_FOUND) {
+            log.warn("⚠️ 商品不存在，无法恢复库存: productId={}, quantity={}", productId, quantity);
+            return;
+        }
 
-        // 使用Lua脚本原子性增加库存
-        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
-        script.setScriptText(INCREASE_STOCK_SCRIPT);
-        script.setResultType(Long.class);
+        log.info("✅ Redis库存增加成功: productId={}, quantity={}, 当前库存={}", 
+            productId, quantity, current);
 
-        stringRedisTemplate.execute(script, 
-            Collections.singletonList(stockKey), 
-            String.valueOf(quantity));
+        // 登记写回，由后台批量同步到数据库
+        stockWriteBehindFlusher.markDirty(productId);
+    }
 
-        log.info("✅ Redis库存增加成功: productId={}, quantity={}, 当前库存={}", 
-            productId, quantity, getStock(productId));
+    @Override
+    public StockBatchResult decreaseStockBatch(Map<Long, Integer> items) {
+        validateBatchItems(items);
+        stockWriteBehindFlusher.checkCapacity();
+
+        StockBatchResult result = stockReservationEngine.reserveBatch(items);
+        if (Boolean.TRUE.equals(result.getSuccess())) {
+            log.info("✅ Redis批量扣减库存成功: items={}, 剩余库存={}", items, result.getRemaining());
+            items.keySet().forEach(stockWriteBehindFlusher::markDirty);
+        } else {
+            log.warn("⚠️ Redis批量扣减库存失败: items={}, productId={}, reason={}", 
+                items, result.getFailedProductId(), result.getFailReason());
+        }
+        return result;
+    }
+
+    @Override
+    public StockBatchResult increaseStockBatch(Map<Long, Integer> items) {
+        validateBatchItems(items);
+
+        StockBatchResult result = stockReservationEngine.releaseBatch(items);
+        if (Boolean.TRUE.equals(result.getSuccess())) {
+            log.info("✅ Redis批量增加库存成功: items={}, 当前库存={}", items, result.getRemaining());
+            items.keySet().forEach(stockWriteBehindFlusher::markDirty);
+        } else {
+            log.warn("⚠️ Redis批量增加库存失败: items={}, productId={}, reason={}", 
+                items, result.getFailedProductId(), result.getFailReason());
+        }
+        return result;
+    }
+
+    @Override
+    public int holdStock(String orderNo, Long productId, Integer quantity) {
+        if (!StringUtils.hasText(orderNo) || productId == null || quantity == null || quantity <= 0) {
+            throw new BusinessException("订单号、商品ID和数量不能为空，数量必须大于0");
+        }
+
+        stockWriteBehindFlusher.checkCapacity();
+        long expireAt = System.currentTimeMillis() + holdTtlSeconds * 1000;
+        long remaining = stockReservationEngine.hold(orderNo, productId, quantity, expireAt);
+
+        if (remaining == StockReservationEngine.INSUFFICIENT) {
+            log.warn("⚠️ 库存预占失败（库存不足）: orderNo={}, productId={}, quantity={}", orderNo, productId, quantity);
+            throw new BusinessException("库存不足");
+        }
+        if (remaining == StockReservationEngine.PRODUCT_NOT_FOUND) {
+            throw new BusinessException("商品不存在");
+        }
+        if (remaining == StockReservationEngine.HOLD_EXISTS) {
+            throw new BusinessException("该订单已预占库存");
+        }
+
+        log.info("✅ 库存预占成功: orderNo={}, productId={}, quantity={}, 剩余库存={}, 有效期={}s", 
+            orderNo, productId, quantity, remaining, holdTtlSeconds);
+        stockWriteBehindFlusher.markDirty(productId);
+        return (int) remaining;
+    }
+
+    @Override
+    public String commitHold(String orderNo) {
+        String status = stockReservationEngine.commitHold(orderNo);
+        log.info("✅ 确认库存预占: orderNo={}, status={}", orderNo, status);
+        return status;
+    }
 
-        // 异步同步到数据库
-        syncStockToDBAsync(productId);
+    @Override
+    public String releaseHold(String orderNo, String reason) {
+        StockReservationEngine.HoldRelease release = stockReservationEngine.releaseHold(orderNo, reason);
+        if (release.getProductId() != null) {
+            log.info("✅ 归还库存预占: orderNo={}, productId={}, quantity={}, reason={}", 
+                orderNo, release.getProductId(), release.getQuantity(), reason);
+            stockWriteBehindFlusher.markDirty(release.getProductId());
+        } else {
+            log.info("ℹ️ 无需归还库存预占: orderNo={}, status={}", orderNo, release.getStatus());
+        }
+        return release.getStatus();
+    }
+
+    private void validateBatchItems(Map<Long, Integer> items) {
+        if (items == null || items.isEmpty()) {
+            throw new BusinessException("商品列表不能为空");
+        }
+        if (items.size() > MAX_BATCH_SIZE) {
+            throw new BusinessException("单次最多操作" + MAX_BATCH_SIZE + "个商品");
+        }
+        items.forEach((productId, quantity) -> {
+            if (productId == null || quantity == null || quantity <= 0) {
+                throw new BusinessException("商品ID和数量不能为空，数量必须大于0");
+            }
+        });
     }
 
     /**
@@ -211,40 +277,4 @@ public class StockServiceImpl implements StockService {
             return null;
         });
     }
-
-    /**
-     * 异步同步库存到数据库
-     */
-    private void syncStockToDBAsync(Long productId) {
-        new Thread(() -> {
-            try {
-                if (stringRedisTemplate == null) {
-                    return;
-                }
-
-                String stockKey = STOCK_KEY_PREFIX + productId;
-                String stockStr = stringRedisTemplate.opsForValue().get(stockKey);
-
-                if (stockStr == null) {
-                    return;
-                }
-
-                Integer stock = Integer.parseInt(stockStr);
-
-                // 使用分布式锁同步到数据库
-                redisLockUtil.executeWithLock("stock:sync:" + productId, 3, 10, () -> {
-                    Product product = productMapper.selectById(productId);
-                    if (product != null) {
-                        product.setStock(stock);
-                        productMapper.updateById(product);
-                        log.debug("✅ 库存已同步到数据库: productId={}, stock={}", productId, stock);
-                    }
-                    return null;
-                });
-            } catch (Exception e) {
-                log.error("❌ 同步库存到数据库失败: productId={}, error={}", productId, e.getMessage(), e);
-            }
-        }).start();
-    }
 }
-
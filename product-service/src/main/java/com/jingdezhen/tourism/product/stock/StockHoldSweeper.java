@@ -0,0 +1,79 @@
+package com.jingdezhen.tourism.product.stock;
+
+import com.jingdezhen.tourism.product.service.StockService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 过期预占清理
+ * 按固定间隔从过期时间有序集合中分批取出到期订单号并归还库存；
+ * 每笔归还在一次Lua调用内完成，多实例同时清理时同一笔预占只会被归还一次
+ */
+@Slf4j
+@Component
+public class StockHoldSweeper {
+
+    private final StockReservationEngine stockReservationEngine;
+    private final StockService stockService;
+    private final Counter expiredHolds;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stock-hold-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${stock.hold.sweep-interval-ms:5000}")
+    private long sweepIntervalMs;
+
+    @Value("${stock.hold.sweep-batch-size:200}")
+    private int batchSize;
+
+    public StockHoldSweeper(StockReservationEngine stockReservationEngine, StockService stockService,
+                            MeterRegistry meterRegistry) {
+        this.stockReservationEngine = stockReservationEngine;
+        this.stockService = stockService;
+        this.expiredHolds = Counter.builder("product.stock.hold.expired")
+                .description("超时归还的库存预占数")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::sweepSafely, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("✅ 库存预占清理已启动: interval={}ms, batchSize={}", sweepIntervalMs, batchSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void sweepSafely() {
+        try {
+            long now = System.currentTimeMillis();
+            List<String> orderNos;
+            do {
+                orderNos = stockReservationEngine.findExpiredHolds(now, batchSize);
+                for (String orderNo : orderNos) {
+                    if (StockReservationEngine.HOLD_EXPIRED.equals(
+                            stockService.releaseHold(orderNo, StockReservationEngine.HOLD_EXPIRED))) {
+                        expiredHolds.increment();
+                    }
+                }
+            } while (orderNos.size() >= batchSize && !Thread.currentThread().isInterrupted());
+        } catch (Exception e) {
+            log.error("❌ 清理过期库存预占失败: error={}", e.getMessage(), e);
+        }
+    }
+}
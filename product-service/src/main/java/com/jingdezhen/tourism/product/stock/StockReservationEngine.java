@@ -0,0 +1,444 @@
+package com.jingdezhen.tourism.product.stock;
+
+import com.jingdezhen.tourism.common.entity.Product;
+import com.jingdezhen.tourism.common.vo.StockBatchResult;
+import com.jingdezhen.tourism.product.mapper.ProductMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 库存预占引擎
+ * 懒加载、校验、扣减和返回剩余库存在一次Lua脚本调用内完成；
+ * 脚本为静态常量，SHA1只计算一次，执行时走EVALSHA（NOSCRIPT时自动回退EVAL）
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockReservationEngine {
+
+    public static final String STOCK_KEY_PREFIX = "stock:product:";
+    public static final long STOCK_CACHE_EXPIRE = 7 * 24 * 60 * 60; // 7天过期
+
+    /**
+     * 库存不足
+     */
+    public static final long INSUFFICIENT = -1;
+
+    /**
+     * Redis中尚未加载库存（仅脚本内部使用）
+     */
+    public static final long NOT_INITIALIZED = -2;
+
+    /**
+     * 商品不存在
+     */
+    public static final long PRODUCT_NOT_FOUND = -3;
+
+    /**
+     * 该订单号已存在预占记录
+     */
+    public static final long HOLD_EXISTS = -4;
+
+    public static final String HOLD_KEY_PREFIX = "stock:hold:";
+    public static final String HOLD_DONE_KEY_PREFIX = "stock:hold:done:";
+    public static final String HOLD_EXPIRY_KEY = "stock:hold:expiry";
+
+    /**
+     * 预占状态：已确认（支付成功）
+     */
+    public static final String HOLD_COMMITTED = "COMMITTED";
+
+    /**
+     * 预占状态：超时未支付，已由清理任务归还
+     */
+    public static final String HOLD_EXPIRED = "EXPIRED";
+
+    /**
+     * 预占状态：订单取消，已主动归还
+     */
+    public static final String HOLD_RELEASED = "RELEASED";
+
+    /**
+     * 预占状态：无预占记录（如启用预占前创建的订单）
+     */
+    public static final String HOLD_NOT_FOUND = "NOT_FOUND";
+
+    /**
+     * 预占库存脚本
+     * ARGV[1]-扣减数量，ARGV[2]-初始库存（可为空），ARGV[3]-过期秒数
+     * 返回：>=0 剩余库存；-1 库存不足；-2 未初始化且未提供初始库存
+     */
+    private static final RedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>(
+        "local stock = redis.call('get', KEYS[1]) " +
+        "if not stock then " +
+        "  if ARGV[2] == nil or ARGV[2] == '' then return -2 end " +
+        "  redis.call('set', KEYS[1], ARGV[2], 'EX', ARGV[3]) " +
+        "  stock = ARGV[2] " +
+        "end " +
+        "local quantity = tonumber(ARGV[1]) " +
+        "if tonumber(stock) < quantity then return -1 end " +
+        "return redis.call('decrby', KEYS[1], quantity)",
+        Long.class);
+
+    /**
+     * 归还库存脚本
+     * ARGV[1]-归还数量，ARGV[2]-初始库存（可为空），ARGV[3]-过期秒数
+     * 返回：>=0 归还后的库存；-2 未初始化且未提供初始库存
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('exists', KEYS[1]) == 0 then " +
+        "  if ARGV[2] == nil or ARGV[2] == '' then return -2 end " +
+        "  redis.call('set', KEYS[1], ARGV[2], 'EX', ARGV[3]) " +
+        "end " +
+        "return redis.call('incrby', KEYS[1], tonumber(ARGV[1]))",
+        Long.class);
+
+    /**
+     * 批量脚本公共部分：补齐未加载的库存
+     * ARGV[1]-过期秒数，ARGV[2i]-第i个商品的数量，ARGV[2i+1]-第i个商品的初始库存（可为空）
+     * 仍有未加载且未提供初始库存的商品时返回 {-2, 下标...}
+     */
+    private static final String BATCH_INIT_PRELUDE =
+        "local missing = {} " +
+        "for i = 1, #KEYS do " +
+        "  if redis.call('exists', KEYS[i]) == 0 then " +
+        "    local init = ARGV[2 * i + 1] " +
+        "    if init == nil or init == '' then " +
+        "      table.insert(missing, i) " +
+        "    else " +
+        "      redis.call('set', KEYS[i], init, 'EX', ARGV[1]) " +
+        "    end " +
+        "  end " +
+        "end " +
+        "if #missing > 0 then " +
+        "  table.insert(missing, 1, -2) " +
+        "  return missing " +
+        "end ";
+
+    /**
+     * 批量预占脚本：全部校验通过后才扣减
+     * 返回：{1, 剩余库存...}；{-1, 不足的下标}；{-2, 未加载的下标...}
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> BATCH_RESERVE_SCRIPT = new DefaultRedisScript<>(
+        BATCH_INIT_PRELUDE +
+        "for i = 1, #KEYS do " +
+        "  if tonumber(redis.call('get', KEYS[i])) < tonumber(ARGV[2 * i]) then " +
+        "    return {-1, i} " +
+        "  end " +
+        "end " +
+        "local result = {1} " +
+        "for i = 1, #KEYS do " +
+        "  table.insert(result, redis.call('decrby', KEYS[i], tonumber(ARGV[2 * i]))) " +
+        "end " +
+        "return result",
+        List.class);
+
+    /**
+     * 批量归还脚本
+     * 返回：{1, 归还后库存...}；{-2, 未加载的下标...}
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> BATCH_RELEASE_SCRIPT = new DefaultRedisScript<>(
+        BATCH_INIT_PRELUDE +
+        "local result = {1} " +
+        "for i = 1, #KEYS do " +
+        "  table.insert(result, redis.call('incrby', KEYS[i], tonumber(ARGV[2 * i]))) " +
+        "end " +
+        "return result",
+        List.class);
+
+    /**
+     * 带过期时间的预占脚本
+     * KEYS[1]-库存key，KEYS[2]-预占记录，KEYS[3]-过期时间有序集合
+     * ARGV[1..3]同预占脚本，ARGV[4]-商品ID，ARGV[5]-过期时间戳（毫秒），ARGV[6]-订单号
+     * 返回：>=0 剩余库存；-1 库存不足；-2 未初始化；-4 该订单已预占
+     */
+    private static final RedisScript<Long> HOLD_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('exists', KEYS[2]) == 1 then return -4 end " +
+        "local stock = redis.call('get', KEYS[1]) " +
+        "if not stock then " +
+        "  if ARGV[2] == nil or ARGV[2] == '' then return -2 end " +
+        "  redis.call('set', KEYS[1], ARGV[2], 'EX', ARGV[3]) " +
+        "  stock = ARGV[2] " +
+        "end " +
+        "local quantity = tonumber(ARGV[1]) " +
+        "if tonumber(stock) < quantity then return -1 end " +
+        "local remaining = redis.call('decrby', KEYS[1], quantity) " +
+        "redis.call('hset', KEYS[2], 'productId', ARGV[4], 'quantity', ARGV[1]) " +
+        "redis.call('zadd', KEYS[3], ARGV[5], ARGV[6]) " +
+        "return remaining",
+        Long.class);
+
+    /**
+     * 确认预占脚本
+     * KEYS[1]-预占记录，KEYS[2]-过期时间有序集合，KEYS[3]-处理结果标记
+     * ARGV[1]-订单号，ARGV[2]-标记过期秒数
+     * 返回：COMMITTED；已处理过时返回当时的结果；NOT_FOUND
+     */
+    private static final RedisScript<String> COMMIT_HOLD_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('exists', KEYS[1]) == 1 then " +
+        "  redis.call('del', KEYS[1]) " +
+        "  redis.call('zrem', KEYS[2], ARGV[1]) " +
+        "  redis.call('set', KEYS[3], 'COMMITTED', 'EX', ARGV[2]) " +
+        "  return 'COMMITTED' " +
+        "end " +
+        "local done = redis.call('get', KEYS[3]) " +
+        "if done then return done end " +
+        "return 'NOT_FOUND'",
+        String.class);
+
+    /**
+     * 归还预占脚本
+     * KEYS同确认脚本，ARGV[1]-订单号，ARGV[2]-标记过期秒数，ARGV[3]-归还原因，ARGV[4]-库存key前缀
+     * 库存key由预占记录中的商品ID拼出（单机Redis）；库存key已过期时不加回，返回restored=0由调用方从数据库补
+     * 返回：{原因, 商品ID, 数量, restored}；已处理过时返回 {当时的结果}；无记录返回 {NOT_FOUND}
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RELEASE_HOLD_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('exists', KEYS[1]) == 0 then " +
+        "  redis.call('zrem', KEYS[2], ARGV[1]) " +
+        "  local done = redis.call('get', KEYS[3]) " +
+        "  if done then return {done} end " +
+        "  return {'NOT_FOUND'} " +
+        "end " +
+        "local productId = redis.call('hget', KEYS[1], 'productId') " +
+        "local quantity = redis.call('hget', KEYS[1], 'quantity') " +
+        "local stockKey = ARGV[4] .. productId " +
+        "local restored = '0' " +
+        "if redis.call('exists', stockKey) == 1 then " +
+        "  redis.call('incrby', stockKey, tonumber(quantity)) " +
+        "  restored = '1' " +
+        "end " +
+        "redis.call('del', KEYS[1]) " +
+        "redis.call('zrem', KEYS[2], ARGV[1]) " +
+        "redis.call('set', KEYS[3], ARGV[3], 'EX', ARGV[2]) " +
+        "return {ARGV[3], productId, quantity, restored}",
+        List.class);
+
+    private final ProductMapper productMapper;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 预占（扣减）库存
+     * 热路径只有一次Redis调用；库存未加载时从数据库读取后再调用一次完成初始化与扣减
+     *
+     * @return 剩余库存，或 {@link #INSUFFICIENT} / {@link #PRODUCT_NOT_FOUND}
+     */
+    public long reserve(Long productId, int quantity) {
+        return executeWithLazyInit(RESERVE_SCRIPT, productId, quantity);
+    }
+
+    /**
+     * 归还库存
+     *
+     * @return 归还后的库存，或 {@link #PRODUCT_NOT_FOUND}
+     */
+    public long release(Long productId, int quantity) {
+        return executeWithLazyInit(RELEASE_SCRIPT, productId, quantity);
+    }
+
+    /**
+     * 批量预占库存（全部成功或全部不生效），一次Redis调用完成
+     */
+    public StockBatchResult reserveBatch(Map<Long, Integer> items) {
+        return executeBatchWithLazyInit(BATCH_RESERVE_SCRIPT, items);
+    }
+
+    /**
+     * 批量归还库存
+     */
+    public StockBatchResult releaseBatch(Map<Long, Integer> items) {
+        return executeBatchWithLazyInit(BATCH_RELEASE_SCRIPT, items);
+    }
+
+    /**
+     * 为订单预占库存，到期未确认时由清理任务归还
+     *
+     * @param expireAt 过期时间戳（毫秒）
+     * @return 剩余库存，或 {@link #INSUFFICIENT} / {@link #PRODUCT_NOT_FOUND} / {@link #HOLD_EXISTS}
+     */
+    public long hold(String orderNo, Long productId, int quantity, long expireAt) {
+        List<String> keys = List.of(stockKey(productId), HOLD_KEY_PREFIX + orderNo, HOLD_EXPIRY_KEY);
+        return executeWithLazyInit(HOLD_SCRIPT, keys, productId, quantity,
+            String.valueOf(productId), String.valueOf(expireAt), orderNo);
+    }
+
+    /**
+     * 确认预占（支付成功后调用），重复调用返回相同结果
+     *
+     * @return {@link #HOLD_COMMITTED} / {@link #HOLD_EXPIRED} / {@link #HOLD_RELEASED} / {@link #HOLD_NOT_FOUND}
+     */
+    public String commitHold(String orderNo) {
+        String status = stringRedisTemplate.execute(COMMIT_HOLD_SCRIPT, holdKeys(orderNo),
+            orderNo, String.valueOf(STOCK_CACHE_EXPIRE));
+        return status != null ? status : HOLD_NOT_FOUND;
+    }
+
+    /**
+     * 归还预占的库存
+     *
+     * @param reason {@link #HOLD_EXPIRED} 或 {@link #HOLD_RELEASED}
+     */
+    @SuppressWarnings("unchecked")
+    public HoldRelease releaseHold(String orderNo, String reason) {
+        List<String> result = stringRedisTemplate.execute(RELEASE_HOLD_SCRIPT, holdKeys(orderNo),
+            orderNo, String.valueOf(STOCK_CACHE_EXPIRE), reason, STOCK_KEY_PREFIX);
+        if (result == null || result.size() < 4) {
+            return new HoldRelease(result != null && !result.isEmpty() ? result.get(0) : HOLD_NOT_FOUND, null, null);
+        }
+
+        Long productId = Long.valueOf(result.get(1));
+        int quantity = Integer.parseInt(result.get(2));
+        if (!"1".equals(result.get(3))) {
+            // 库存key已过期，数据库中的值即为最新，按普通归还处理（会从数据库加载后再加回）
+            release(productId, quantity);
+        }
+        return new HoldRelease(result.get(0), productId, quantity);
+    }
+
+    /**
+     * 查询已过期的预占订单号
+     */
+    public List<String> findExpiredHolds(long now, int limit) {
+        Set<String> orderNos = stringRedisTemplate.opsForZSet()
+            .rangeByScore(HOLD_EXPIRY_KEY, 0, now, 0, limit);
+        return orderNos != null ? new ArrayList<>(orderNos) : Collections.emptyList();
+    }
+
+    public static String stockKey(Long productId) {
+        return STOCK_KEY_PREFIX + productId;
+    }
+
+    private static List<String> holdKeys(String orderNo) {
+        return List.of(HOLD_KEY_PREFIX + orderNo, HOLD_EXPIRY_KEY, HOLD_DONE_KEY_PREFIX + orderNo);
+    }
+
+    private long executeWithLazyInit(RedisScript<Long> script, Long productId, int quantity) {
+        return executeWithLazyInit(script, Collections.singletonList(stockKey(productId)), productId, quantity);
+    }
+
+    /**
+     * KEYS[1]必须为库存key；ARGV前三个固定为 数量、初始库存、过期秒数，其后为脚本自定义参数
+     */
+    private long executeWithLazyInit(RedisScript<Long> script, List<String> keys, Long productId, int quantity,
+                                     String... extraArgs) {
+        String quantityArg = String.valueOf(quantity);
+        String expireArg = String.valueOf(STOCK_CACHE_EXPIRE);
+
+        Long result = stringRedisTemplate.execute(script, keys, buildArgs(quantityArg, "", expireArg, extraArgs));
+
+        if (result != null && result == NOT_INITIALIZED) {
+            Product product = productMapper.selectById(productId);
+            if (product == null) {
+                log.warn("⚠️ 商品不存在: productId={}", productId);
+                return PRODUCT_NOT_FOUND;
+            }
+            int dbStock = product.getStock() != null ? product.getStock() : 0;
+            log.info("✅ 初始化商品库存到Redis: productId={}, stock={}", productId, dbStock);
+
+            // 脚本内会再次检查key是否存在，并发初始化时以先写入者为准
+            result = stringRedisTemplate.execute(script, keys,
+                buildArgs(quantityArg, String.valueOf(dbStock), expireArg, extraArgs));
+        }
+
+        return result != null ? result : INSUFFICIENT;
+    }
+
+    private static Object[] buildArgs(String quantityArg, String initArg, String expireArg, String... extraArgs) {
+        Object[] args = new Object[3 + extraArgs.length];
+        args[0] = quantityArg;
+        args[1] = initArg;
+        args[2] = expireArg;
+        System.arraycopy(extraArgs, 0, args, 3, extraArgs.length);
+        return args;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private StockBatchResult executeBatchWithLazyInit(RedisScript<List> script, Map<Long, Integer> items) {
+        List<Long> productIds = new ArrayList<>(items.keySet());
+        List<String> keys = productIds.stream().map(StockReservationEngine::stockKey).toList();
+
+        List<Long> result = executeBatch(script, keys, productIds, items, Collections.emptyMap());
+
+        if (result.get(0) == NOT_INITIALIZED) {
+            List<Long> missingIds = result.subList(1, result.size()).stream()
+                    .map(index -> productIds.get(index.intValue() - 1))
+                    .toList();
+            Map<Long, Integer> dbStocks = new HashMap<>();
+            for (Product product : productMapper.selectBatchIds(missingIds)) {
+                dbStocks.put(product.getId(), product.getStock() != null ? product.getStock() : 0);
+            }
+            for (Long missingId : missingIds) {
+                if (!dbStocks.containsKey(missingId)) {
+                    log.warn("⚠️ 商品不存在: productId={}", missingId);
+                    return StockBatchResult.fail(missingId, "商品不存在");
+                }
+            }
+            log.info("✅ 批量初始化商品库存到Redis: {}", dbStocks);
+            result = executeBatch(script, keys, productIds, items, dbStocks);
+        }
+
+        if (result.get(0) == INSUFFICIENT) {
+            return StockBatchResult.fail(productIds.get(result.get(1).intValue() - 1), "库存不足");
+        }
+        if (result.get(0) != 1) {
+            return StockBatchResult.fail(null, "库存初始化失败");
+        }
+
+        Map<Long, Integer> remaining = new LinkedHashMap<>();
+        for (int i = 0; i < productIds.size(); i++) {
+            remaining.put(productIds.get(i), result.get(i + 1).intValue());
+        }
+        return StockBatchResult.success(remaining);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private List<Long> executeBatch(RedisScript<List> script, List<String> keys, List<Long> productIds,
+                                    Map<Long, Integer> items, Map<Long, Integer> initStocks) {
+        Object[] args = new Object[productIds.size() * 2 + 1];
+        args[0] = String.valueOf(STOCK_CACHE_EXPIRE);
+        for (int i = 0; i < productIds.size(); i++) {
+            Long productId = productIds.get(i);
+            Integer initStock = initStocks.get(productId);
+            args[2 * i + 1] = String.valueOf(items.get(productId));
+            args[2 * i + 2] = initStock != null ? String.valueOf(initStock) : "";
+        }
+        List<Long> result = stringRedisTemplate.execute(script, keys, args);
+        return result != null && !result.isEmpty() ? result : List.of(INSUFFICIENT, 1L);
+    }
+
+    /**
+     * 归还预占结果
+     */
+    @Data
+    @AllArgsConstructor
+    public static class HoldRelease {
+
+        /**
+         * 本次归还的原因；已处理过时为当时的结果
+         */
+        private String status;
+
+        /**
+         * 本次归还的商品ID，未发生归还时为空
+         */
+        private Long productId;
+
+        private Integer quantity;
+    }
+}
@@ -0,0 +1,219 @@
+package com.jingdezhen.tourism.product.stock;
+
+import com.baomidou.mybatisplus.core.batch.MybatisBatch;
+import com.jingdezhen.tourism.common.entity.Product;
+import com.jingdezhen.tourism.common.exception.BusinessException;
+import com.jingdezhen.tourism.product.mapper.ProductMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 库存写回（write-behind）
+ * 库存变更只登记商品ID，由单个调度线程按固定间隔合并刷写：
+ * 同一商品在一个窗口内的多次变更只写一次，写入值取刷写时Redis中的最新库存，
+ * 每轮使用一个JDBC批处理完成所有UPDATE。
+ * max-pending 只决定何时提前刷写，不限制待刷写数量；数据库不可用时写回差距由以下两个阈值限制：
+ * 待刷写商品数达到 hard-limit，或最近一次成功刷写距今超过 max-lag-seconds 时，
+ * {@link #checkCapacity()} 拒绝新的扣减（归还不受限制），直到刷写恢复。
+ * 监控项 product.stock.writebehind.pending / product.stock.writebehind.lag 可用于告警
+ */
+@Slf4j
+@Component
+public class StockWriteBehindFlusher {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final Timer flushTimer;
+    private final Counter flushedRows;
+    private final Counter flushFailures;
+
+    /**
+     * 待刷写的商品ID（同一商品自然合并）
+     */
+    private final Set<Long> dirtyProducts = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stock-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${stock.write-behind.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    @Value("${stock.write-behind.max-pending:10000}")
+    private int maxPending;
+
+    @Value("${stock.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${stock.write-behind.hard-limit:50000}")
+    private int hardLimit;
+
+    @Value("${stock.write-behind.max-lag-seconds:30}")
+    private long maxLagSeconds;
+
+    /**
+     * 最近一次成功刷写（或待刷写队列为空）的时间
+     */
+    private volatile long lastSuccessTime = System.currentTimeMillis();
+
+    public StockWriteBehindFlusher(StringRedisTemplate stringRedisTemplate, SqlSessionFactory sqlSessionFactory,
+                                   MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.flushTimer = Timer.builder("product.stock.writebehind.flush")
+                .description("库存写回单轮刷写耗时")
+                .register(meterRegistry);
+        this.flushedRows = Counter.builder("product.stock.writebehind.rows")
+                .description("库存写回累计刷写行数")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("product.stock.writebehind.failures")
+                .description("库存写回失败次数")
+                .register(meterRegistry);
+        Gauge.builder("product.stock.writebehind.pending", dirtyProducts, Set::size)
+                .description("等待刷写的商品数")
+                .register(meterRegistry);
+        Gauge.builder("product.stock.writebehind.lag", this, flusher -> flusher.lagMillis() / 1000.0)
+                .description("待刷写的变更距最近一次成功刷写的时间")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("✅ 库存写回已启动: interval={}ms, maxPending={}, batchSize={}", flushIntervalMs, maxPending, batchSize);
+    }
+
+    /**
+     * 登记库存变更的商品
+     */
+    public void markDirty(Long productId) {
+        if (dirtyProducts.add(productId) && dirtyProducts.size() >= maxPending && !scheduler.isShutdown()) {
+            // 达到容量上限时不等下一个窗口，立即触发一次刷写
+            scheduler.execute(this::flushSafely);
+        }
+    }
+
+    /**
+     * 扣减库存前检查写回差距，超过上限时拒绝（背压），避免数据库长时间不可用时差距无限扩大
+     */
+    public void checkCapacity() {
+        int pending = dirtyProducts.size();
+        long lagMillis = lagMillis();
+        if (pending >= hardLimit || lagMillis > maxLagSeconds * 1000) {
+            log.warn("⚠️ 库存写回积压，暂停扣减: pending={}, lag={}ms", pending, lagMillis);
+            throw new BusinessException("库存服务繁忙，请稍后重试");
+        }
+    }
+
+    private long lagMillis() {
+        return dirtyProducts.isEmpty() ? 0 : System.currentTimeMillis() - lastSuccessTime;
+    }
+
+    /**
+     * 停机时排空待刷写队列
+     */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        log.info("⏳ 停机排空库存写回队列: pending={}", dirtyProducts.size());
+        flushSafely();
+    }
+
+    private synchronized void flushSafely() {
+        try {
+            // 每轮只处理进入本轮时已登记的数量，避免持续写入时线程被长期占用
+            int remaining = dirtyProducts.size();
+            if (remaining == 0) {
+                lastSuccessTime = System.currentTimeMillis();
+            }
+            while (remaining > 0 && !dirtyProducts.isEmpty()) {
+                remaining -= batchSize;
+                if (!flushBatch()) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("❌ 库存写回失败: pending={}, error={}", dirtyProducts.size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 刷写一批商品库存
+     *
+     * @return 是否成功（失败时本批ID重新登记，等待下一轮）
+     */
+    private boolean flushBatch() {
+        List<Long> productIds = new ArrayList<>(Math.min(batchSize, dirtyProducts.size()));
+        Iterator<Long> iterator = dirtyProducts.iterator();
+        while (iterator.hasNext() && productIds.size() < batchSize) {
+            productIds.add(iterator.next());
+            // 先移除再读取：读取后发生的变更会重新登记，由下一轮写入更新的值
+            iterator.remove();
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<String> keys = productIds.stream().map(StockReservationEngine::stockKey).toList();
+            List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+
+            List<Product> updates = new ArrayList<>(productIds.size());
+            for (int i = 0; i < productIds.size(); i++) {
+                String value = values != null ? values.get(i) : null;
+                if (value == null) {
+                    // 缓存已过期，数据库中的值即为最新
+                    continue;
+                }
+                Product product = new Product();
+                product.setId(productIds.get(i));
+                product.setStock(Integer.parseInt(value));
+                updates.add(product);
+            }
+
+            if (!updates.isEmpty()) {
+                new MybatisBatch<>(sqlSessionFactory, updates)
+                        .execute(new MybatisBatch.Method<Product>(ProductMapper.class).updateById());
+                flushedRows.increment(updates.size());
+                log.debug("✅ 库存已批量同步到数据库: count={}", updates.size());
+            }
+            lastSuccessTime = System.currentTimeMillis();
+            return true;
+        } catch (Exception e) {
+            flushFailures.increment();
+            dirtyProducts.addAll(productIds);
+            log.error("❌ 批量同步库存到数据库失败，等待下一轮重试: count={}, error={}",
+                    productIds.size(), e.getMessage(), e);
+            return false;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+-- 游标分页索引：/product/list/cursor
+-- 条件 status = 1 [AND category_id = ?] [AND region = ?]
+--      AND (create_time < ? OR (create_time = ? AND id < ?))
+-- ORDER BY create_time DESC, id DESC LIMIT size + 1
+ALTER TABLE product
+    ADD INDEX idx_product_status_create_time (status, create_time, id);
@@ -0,0 +1,14 @@
+-- 产品评分聚合列：评论变更消息按差值累加 rating_sum / rating_count，rating 由两者计算
+ALTER TABLE product
+    ADD COLUMN rating_sum INT NOT NULL DEFAULT 0 COMMENT '评分总和' AFTER rating,
+    ADD COLUMN rating_count INT NOT NULL DEFAULT 0 COMMENT '评论数' AFTER rating_sum;
+
+-- 历史数据初始化（ProductRatingReconciler 首次运行也会完成同样的修正）
+UPDATE product p
+    LEFT JOIN (SELECT product_id, SUM(rating) AS rating_sum, COUNT(*) AS rating_count
+               FROM review
+               WHERE deleted = 0
+               GROUP BY product_id) r ON r.product_id = p.id
+SET p.rating_sum   = IFNULL(r.rating_sum, 0),
+    p.rating_count = IFNULL(r.rating_count, 0),
+    p.rating       = IF(IFNULL(r.rating_count, 0) > 0, ROUND(r.rating_sum / r.rating_count, 1), 5.0);
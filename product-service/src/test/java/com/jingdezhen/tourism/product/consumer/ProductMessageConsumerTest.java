@@ -0,0 +1,93 @@
+package com.jingdezhen.tourism.product.consumer;
+
+import com.jingdezhen.tourism.common.idempotent.MessageDeduplicator;
+import com.jingdezhen.tourism.common.message.OrderPaidMessage;
+import com.jingdezhen.tourism.product.cache.ProductCache;
+import com.jingdezhen.tourism.product.mapper.ProductMapper;
+import com.jingdezhen.tourism.product.rating.ProductRatingReconciler;
+import com.jingdezhen.tourism.product.service.StockService;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * ProductMessageConsumer 测试：批量消费订单支付消息时的批内去重
+ */
+class ProductMessageConsumerTest {
+
+    private static final String INCREMENT_SALES = ProductMapper.class.getName() + ".incrementSales";
+
+    private SqlSession sqlSession;
+    private MessageDeduplicator messageDeduplicator;
+    private ProductCache productCache;
+    private ProductMessageConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        SqlSessionFactory sqlSessionFactory = mock(SqlSessionFactory.class);
+        sqlSession = mock(SqlSession.class);
+        when(sqlSessionFactory.openSession(eq(ExecutorType.BATCH), anyBoolean())).thenReturn(sqlSession);
+        messageDeduplicator = mock(MessageDeduplicator.class);
+        productCache = mock(ProductCache.class);
+        consumer = new ProductMessageConsumer(mock(ProductMapper.class), sqlSessionFactory, mock(StockService.class),
+                mock(ProductRatingReconciler.class), productCache, messageDeduplicator);
+    }
+
+    @Test
+    void duplicateOrderInSameBatchIsCountedOnce() {
+        // 与真实行为一致：同一订单认领后未完成前再次认领返回正在处理
+        when(messageDeduplicator.claim("order-paid", 1L))
+                .thenReturn(MessageDeduplicator.CLAIMED, MessageDeduplicator.IN_PROGRESS);
+        when(messageDeduplicator.claim("order-paid", 2L))
+                .thenReturn(MessageDeduplicator.CLAIMED, MessageDeduplicator.IN_PROGRESS);
+
+        assertDoesNotThrow(() -> consumer.handleOrderPaid(List.of(
+                paid(1L, 10L, 2), paid(2L, 10L, 3), paid(1L, 10L, 2), paid(2L, 10L, 3))));
+
+        verify(messageDeduplicator, times(1)).claim("order-paid", 1L);
+        verify(messageDeduplicator, times(1)).claim("order-paid", 2L);
+        verify(sqlSession).update(INCREMENT_SALES, Map.of("productId", 10L, "quantity", 5));
+        verify(messageDeduplicator).complete("order-paid", 1L);
+        verify(messageDeduplicator).complete("order-paid", 2L);
+        verify(messageDeduplicator, never()).release(eq("order-paid"), eq(1L));
+        verify(productCache).evictStats(10L, null);
+    }
+
+    @Test
+    void alreadyProcessedOrderIsSkipped() {
+        when(messageDeduplicator.claim("order-paid", 1L)).thenReturn(MessageDeduplicator.DUPLICATE);
+        when(messageDeduplicator.claim("order-paid", 2L)).thenReturn(MessageDeduplicator.CLAIMED);
+
+        consumer.handleOrderPaid(List.of(paid(1L, 10L, 2), paid(2L, 11L, 1)));
+
+        verify(sqlSession, times(1)).update(eq(INCREMENT_SALES), any());
+        verify(sqlSession).update(INCREMENT_SALES, Map.of("productId", 11L, "quantity", 1));
+        verify(messageDeduplicator, never()).complete("order-paid", 1L);
+        verify(messageDeduplicator).complete("order-paid", 2L);
+    }
+
+    private static Message<OrderPaidMessage> paid(Long orderId, Long productId, int quantity) {
+        OrderPaidMessage message = new OrderPaidMessage();
+        message.setOrderId(orderId);
+        message.setProductId(productId);
+        message.setQuantity(quantity);
+        return MessageBuilder.withPayload(message).build();
+    }
+}
@@ -0,0 +1,136 @@
+package com.jingdezhen.tourism.product.search;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.jingdezhen.tourism.common.entity.Product;
+import com.jingdezhen.tourism.product.mapper.ProductMapper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * ProductSearchIndex 测试：切分、排序以及构建期间的刷新
+ */
+class ProductSearchIndexTest {
+
+    private ProductMapper productMapper;
+    private ProductSearchIndex index;
+    private final Map<Long, Product> table = new HashMap<>();
+
+    @BeforeAll
+    static void initTableInfo() {
+        // 构建索引时的 LambdaQueryWrapper 需要实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Product.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        productMapper = mock(ProductMapper.class);
+        when(productMapper.selectById(any())).thenAnswer(invocation -> table.get((Long) invocation.getArgument(0)));
+        when(productMapper.selectBatchIds(anyCollection())).thenAnswer(invocation ->
+                ((Collection<?>) invocation.getArgument(0)).stream().map(table::get).toList());
+        index = new ProductSearchIndex(productMapper);
+    }
+
+    @Test
+    void tokenizeSplitsCjkIntoUnigramsAndBigramsAndLatinIntoWordsWithPrefixes() {
+        assertEquals(List.of("青", "花", "瓷", "青花", "花瓷"), ProductSearchIndex.tokenize("青花瓷", false));
+        assertEquals(List.of("kilns", "ki", "kil", "kiln"), ProductSearchIndex.tokenize("Kilns", false));
+        assertEquals(List.of("qh", "2024a", "20", "202", "2024"), ProductSearchIndex.tokenize("QH-2024A", false));
+    }
+
+    @Test
+    void queryTokensUseBigramsWholeWordsAndDeduplicate() {
+        assertEquals(List.of("青花", "花瓷"), ProductSearchIndex.queryTokens("青花瓷"));
+        assertEquals(List.of("瓷"), ProductSearchIndex.queryTokens("瓷"));
+        assertEquals(List.of("kiln", "青花"), ProductSearchIndex.queryTokens("Kiln 青花 kiln"));
+        assertEquals(List.of("a".repeat(20)), ProductSearchIndex.queryTokens("a".repeat(25)));
+        assertTrue(ProductSearchIndex.queryTokens("  ").isEmpty());
+    }
+
+    @Test
+    void prefixQueryMatchesLongerWords() {
+        build(product(1L, "Kilns tour", 0, "4.0"), product(2L, "QH2024A vase", 0, "4.0"));
+
+        assertEquals(List.of(1L), ids(index.search("kiln", null, null, 1L, 10L)));
+        assertEquals(List.of(2L), ids(index.search("qh2024", null, null, 1L, 10L)));
+        assertTrue(ids(index.search("2024", null, null, 1L, 10L)).isEmpty());
+    }
+
+    @Test
+    void ranksByRecommendThenRelevanceThenRating() {
+        build(
+                product(1L, "青花瓷 kilns", 0, "5.0"),   // 前缀命中，半权
+                product(2L, "青花瓷 kiln", 0, "3.0"),    // 整词命中
+                product(3L, "青花瓷 kiln", 0, "4.5"),    // 整词命中，评分更高
+                product(4L, "粉彩 kilns", 1, "1.0"));     // 推荐优先
+
+        assertEquals(List.of(4L, 3L, 2L, 1L), ids(index.search("kiln", null, null, 1L, 10L)));
+        assertEquals(List.of(3L, 2L, 1L), ids(index.search("青花 kiln", null, null, 1L, 10L)));
+    }
+
+    @Test
+    void updateRatingReordersWithoutQueryingDatabase() {
+        build(product(1L, "kiln", 0, "3.0"), product(2L, "kiln", 0, "4.0"));
+        assertEquals(List.of(2L, 1L), ids(index.search("kiln", null, null, 1L, 10L)));
+
+        index.updateRating(1L, 4.8);
+        assertEquals(List.of(1L, 2L), ids(index.search("kiln", null, null, 1L, 10L)));
+    }
+
+    @Test
+    void refreshDuringBuildIsNotOverwrittenByStaleBatch() {
+        Product stale = product(1L, "old title", 0, "4.0");
+        table.put(1L, stale);
+        when(productMapper.selectList(any())).thenAnswer(invocation -> {
+            // 构建批次已读到旧数据，此时产品被修改并收到刷新
+            table.put(1L, product(1L, "new title", 0, "4.0"));
+            index.refresh(1L);
+            return List.of(stale);
+        });
+
+        index.build();
+
+        assertTrue(index.isReady());
+        assertEquals(List.of(1L), ids(index.search("new", null, null, 1L, 10L)));
+        assertFalse(ids(index.search("old", null, null, 1L, 10L)).contains(1L));
+    }
+
+    private void build(Product... products) {
+        for (Product product : products) {
+            table.put(product.getId(), product);
+        }
+        when(productMapper.selectList(any())).thenReturn(List.of(products));
+        index.build();
+    }
+
+    private static Product product(Long id, String title, int recommend, String rating) {
+        Product product = new Product();
+        product.setId(id);
+        product.setTitle(title);
+        product.setStatus(1);
+        product.setRecommend(recommend);
+        product.setRating(new BigDecimal(rating));
+        return product;
+    }
+
+    private static List<Long> ids(Page<Product> page) {
+        return page.getRecords().stream().map(Product::getId).toList();
+    }
+}
@@ -9,7 +9,7 @@ import org.springframework.cloud.openfeign.EnableFeignClients;
 @SpringBootApplication(scanBasePackages = {"com.jingdezhen.tourism.review", "com.jingdezhen.tourism.common"})
 @EnableDiscoveryClient
 @EnableFeignClients(basePackages = "com.jingdezhen.tourism.review.feign")
-@MapperScan("com.jingdezhen.tourism.review.mapper")
+@MapperScan({"com.jingdezhen.tourism.review.mapper", "com.jingdezhen.tourism.common.outbox"})
 public class ReviewServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(ReviewServiceApplication.class, args);
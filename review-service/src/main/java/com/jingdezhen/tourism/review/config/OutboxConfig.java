@@ -0,0 +1,38 @@
+package com.jingdezhen.tourism.review.config;
+
+import com.jingdezhen.tourism.common.outbox.OutboxMessageMapper;
+import com.jingdezhen.tourism.common.outbox.OutboxProperties;
+import com.jingdezhen.tourism.common.outbox.OutboxRelay;
+import com.jingdezhen.tourism.common.outbox.OutboxService;
+import com.jingdezhen.tourism.common.utils.RedisLockUtil;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 发件箱配置：业务消息先随事务落表，再由中继异步投递
+ */
+@Configuration
+public class OutboxConfig {
+
+    @Bean
+    @ConfigurationProperties(prefix = "outbox.relay")
+    public OutboxProperties outboxProperties() {
+        return new OutboxProperties();
+    }
+
+    @Bean
+    public OutboxService outboxService(OutboxMessageMapper outboxMessageMapper,
+                                       @Value("${spring.application.name}") String source) {
+        return new OutboxService(outboxMessageMapper, source);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public OutboxRelay outboxRelay(OutboxMessageMapper outboxMessageMapper, RabbitTemplate rabbitTemplate,
+                                   RedisLockUtil redisLockUtil, OutboxProperties outboxProperties,
+                                   @Value("${spring.application.name}") String source) {
+        return new OutboxRelay(outboxMessageMapper, rabbitTemplate, redisLockUtil, source, outboxProperties);
+    }
+}
@@ -0,0 +1,58 @@
+package com.jingdezhen.tourism.review.controller;
+
+import com.jingdezhen.tourism.common.exception.BusinessException;
+import com.jingdezhen.tourism.common.outbox.OutboxRelay;
+import com.jingdezhen.tourism.common.vo.Result;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * 管理员-发件箱
+ * 运维接口，不经网关暴露，直接访问服务实例，并校验请求头中的管理令牌
+ */
+@RestController
+@RequestMapping("/admin/review/outbox")
+@RequiredArgsConstructor
+public class AdminOutboxController {
+
+    private static final int MAX_REPLAY_LIMIT = 1000;
+    private static final String TOKEN_HEADER = "X-Admin-Token";
+
+    private final OutboxRelay outboxRelay;
+
+    @Value("${outbox.admin-token:}")
+    private String adminToken;
+
+    /** 发送失败（已停止重试）的消息数 */
+    @GetMapping("/failed")
+    public Result<Long> failedCount(@RequestHeader(value = TOKEN_HEADER, required = false) String token) {
+        checkToken(token);
+        return Result.success(outboxRelay.failedCount());
+    }
+
+    /** 重放发送失败的消息（重置为待发送，失败次数清零） */
+    @PostMapping("/failed/replay")
+    public Result<Integer> replay(@RequestHeader(value = TOKEN_HEADER, required = false) String token,
+                                  @RequestParam(defaultValue = "100") Integer limit) {
+        checkToken(token);
+        if (limit <= 0 || limit > MAX_REPLAY_LIMIT) {
+            throw new BusinessException("单次重放数量应在1到" + MAX_REPLAY_LIMIT + "之间");
+        }
+        return Result.success("重放完成", outboxRelay.replay(limit));
+    }
+
+    private void checkToken(String token) {
+        if (!StringUtils.hasText(adminToken)) {
+            throw new BusinessException(403, "未配置管理令牌，接口不可用");
+        }
+        if (token == null || !MessageDigest.isEqual(adminToken.getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.UTF_8))) {
+            throw new BusinessException(403, "无权访问");
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jingdezhen.tourism.common.dto.ReviewCreateDTO;
 import com.jingdezhen.tourism.common.entity.Review;
 import com.jingdezhen.tourism.common.utils.TokenUtil;
+import com.jingdezhen.tourism.common.vo.CursorPage;
+import com.jingdezhen.tourism.common.vo.ProductRatingStatVO;
 import com.jingdezhen.tourism.common.vo.ReviewVO;
 import com.jingdezhen.tourism.common.vo.Result;
 import com.jingdezhen.tourism.review.service.ReviewService;
@@ -47,6 +49,19 @@ public class ReviewController {
         return Result.success(page);
     }
 
+    /**
+     * 游标分页获取产品评价列表（适用于无限滚动）
+     */
+    @GetMapping("/product/{productId}/cursor")
+    public Result<CursorPage<ReviewVO>> getProductReviewsByCursor(
+            @PathVariable Long productId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") Integer size
+    ) {
+        CursorPage<ReviewVO> page = reviewService.getProductReviewsByCursor(productId, cursor, size);
+        return Result.success(page);
+    }
+
     /**
      * 获取我的评价列表
      */
@@ -81,5 +96,12 @@ public class ReviewController {
         java.util.List<Review> reviews = reviewService.getProductAllReviews(productId);
         return Result.success(reviews);
     }
-}
 
+    /**
+     * 批量统计产品评分总和与评论数（评分对账，内部服务调用）
+     */
+    @PostMapping("/product/rating-stats")
+    public Result<java.util.List<ProductRatingStatVO>> getRatingStats(@RequestBody java.util.List<Long> productIds) {
+        return Result.success(reviewService.getRatingStats(productIds));
+    }
+}
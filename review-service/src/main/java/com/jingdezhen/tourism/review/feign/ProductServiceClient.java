@@ -7,6 +7,9 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
 
 /**
  * 商品服务Feign客户端
@@ -17,6 +20,12 @@ public interface ProductServiceClient {
     @GetMapping("/{id}")
     Result<Product> getProductById(@PathVariable Long id);
 
+    /**
+     * 批量获取商品（按传入顺序返回，不存在的商品跳过）
+     */
+    @GetMapping("/batch")
+    Result<List<Product>> getProductsByIds(@RequestParam("ids") List<Long> ids);
+
     @PutMapping
     Result<Void> updateProduct(@RequestBody Product product);
 }
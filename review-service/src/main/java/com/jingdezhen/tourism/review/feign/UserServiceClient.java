@@ -2,9 +2,14 @@ package com.jingdezhen.tourism.review.feign;
 
 import com.jingdezhen.tourism.common.entity.User;
 import com.jingdezhen.tourism.common.vo.Result;
+import com.jingdezhen.tourism.common.vo.UserBriefVO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.List;
 
 /**
  * 用户服务Feign客户端
@@ -14,5 +19,10 @@ public interface UserServiceClient {
 
     @GetMapping("/entity/{id}")
     Result<User> getUserById(@PathVariable Long id);
-}
 
+    /**
+     * 批量获取用户简要信息（不存在的用户跳过）
+     */
+    @PostMapping("/batch")
+    Result<List<UserBriefVO>> getUsersByIds(@RequestBody List<Long> ids);
+}
@@ -2,10 +2,18 @@ package com.jingdezhen.tourism.review.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.jingdezhen.tourism.common.entity.Review;
+import com.jingdezhen.tourism.common.vo.ProductRatingStatVO;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * 评价Mapper接口
  */
 public interface ReviewMapper extends BaseMapper<Review> {
-}
 
+    /**
+     * 按产品统计评分总和与评论数
+     */
+    List<ProductRatingStatVO> selectRatingStats(@Param("productIds") List<Long> productIds);
+}
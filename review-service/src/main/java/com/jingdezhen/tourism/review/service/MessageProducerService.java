@@ -1,49 +1,52 @@
 package com.jingdezhen.tourism.review.service;
 
 import com.jingdezhen.tourism.common.message.ReviewChangedMessage;
+import com.jingdezhen.tourism.common.outbox.OutboxService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Service;
 
 /**
  * 消息生产者服务
+ * 消息写入发件箱，与评价变更同事务提交，由发件箱中继异步投递
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class MessageProducerService {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final OutboxService outboxService;
 
     // 交换机名称
     private static final String PRODUCT_EXCHANGE = "product.exchange";
 
-    // 路由键
+    // 路由键（发送时追加 .{productId}，product-service 按产品分片消费）
     private static final String REVIEW_CHANGED_ROUTING_KEY = "review.changed";
 
     // 变更类型
     public static final String CHANGE_TYPE_CREATE = "CREATE";
+    public static final String CHANGE_TYPE_UPDATE = "UPDATE";
     public static final String CHANGE_TYPE_DELETE = "DELETE";
 
     /**
      * 发送评论变更消息
+     *
+     * @param rating    变更后的评分（删除时为null）
+     * @param oldRating 变更前的评分（创建时为null）
      */
-    public void sendReviewChangedMessage(Long reviewId, Long productId, String changeType) {
-        try {
-            ReviewChangedMessage message = new ReviewChangedMessage();
-            message.setReviewId(reviewId);
-            message.setProductId(productId);
-            message.setChangeType(changeType);
-            message.setChangeTime(System.currentTimeMillis());
-
-            rabbitTemplate.convertAndSend(PRODUCT_EXCHANGE, REVIEW_CHANGED_ROUTING_KEY, message);
-            log.info("✅ 评论变更消息发送成功: reviewId={}, productId={}, changeType={}", 
-                reviewId, productId, changeType);
-        } catch (Exception e) {
-            log.error("❌ 评论变更消息发送失败: reviewId={}, productId={}, changeType={}, error={}", 
-                reviewId, productId, changeType, e.getMessage(), e);
-        }
+    public void sendReviewChangedMessage(Long reviewId, Long productId, String changeType,
+                                         Integer rating, Integer oldRating) {
+        ReviewChangedMessage message = new ReviewChangedMessage();
+        message.setReviewId(reviewId);
+        message.setProductId(productId);
+        message.setChangeType(changeType);
+        message.setRating(rating);
+        message.setOldRating(oldRating);
+        message.setChangeTime(System.currentTimeMillis());
+
+        outboxService.save(PRODUCT_EXCHANGE, REVIEW_CHANGED_ROUTING_KEY + "." + productId, message);
+        log.info("✅ 评论变更消息已写入发件箱: reviewId={}, productId={}, changeType={}, rating={}, oldRating={}", 
+            reviewId, productId, changeType, rating, oldRating);
     }
 }
 
@@ -3,6 +3,8 @@ package com.jingdezhen.tourism.review.service;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jingdezhen.tourism.common.dto.ReviewCreateDTO;
 import com.jingdezhen.tourism.common.entity.Review;
+import com.jingdezhen.tourism.common.vo.CursorPage;
+import com.jingdezhen.tourism.common.vo.ProductRatingStatVO;
 import com.jingdezhen.tourism.common.vo.ReviewVO;
 
 /**
@@ -20,6 +22,11 @@ public interface ReviewService {
      */
     Page<ReviewVO> getProductReviews(Long productId, Long current, Long size);
 
+    /**
+     * 游标分页获取产品评价列表（不查询总数）
+     */
+    CursorPage<ReviewVO> getProductReviewsByCursor(Long productId, String cursor, Integer size);
+
     /**
      * 获取用户评价列表
      */
@@ -44,5 +51,10 @@ public interface ReviewService {
      * 获取产品的所有评论（用于计算评分）
      */
     java.util.List<Review> getProductAllReviews(Long productId);
+
+    /**
+     * 批量统计产品评分总和与评论数（用于评分对账）
+     */
+    java.util.List<ProductRatingStatVO> getRatingStats(java.util.List<Long> productIds);
 }
 
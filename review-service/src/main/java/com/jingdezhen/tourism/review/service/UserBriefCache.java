@@ -0,0 +1,77 @@
+package com.jingdezhen.tourism.review.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jingdezhen.tourism.common.vo.Result;
+import com.jingdezhen.tourism.common.vo.UserBriefVO;
+import com.jingdezhen.tourism.review.feign.UserServiceClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 评价用户信息近端缓存
+ * 渲染评价列表时按页批量获取评价用户的昵称，本地未命中的部分通过一次 /user/batch 调用补齐。
+ * 用户修改昵称后最多在过期时间内显示旧值；user-service 不可用时返回已命中的部分，未命中的不缓存
+ */
+@Slf4j
+@Service
+public class UserBriefCache {
+
+    private final UserServiceClient userServiceClient;
+    private final Cache<Long, UserBriefVO> cache;
+
+    public UserBriefCache(UserServiceClient userServiceClient,
+                          @Value("${review.user-cache.max-size:20000}") long maxSize,
+                          @Value("${review.user-cache.expire-seconds:300}") long expireSeconds) {
+        this.userServiceClient = userServiceClient;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(expireSeconds))
+                .build();
+    }
+
+    /**
+     * 获取单个用户，不存在或获取失败时返回null
+     */
+    public UserBriefVO get(Long userId) {
+        return userId != null ? getAll(List.of(userId)).get(userId) : null;
+    }
+
+    /**
+     * 批量获取用户
+     *
+     * @return 用户ID -> 用户简要信息，不存在或获取失败的用户不包含在结果中
+     */
+    public Map<Long, UserBriefVO> getAll(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return cache.getAll(userIds, this::loadAll);
+    }
+
+    private Map<Long, UserBriefVO> loadAll(Set<? extends Long> userIds) {
+        try {
+            Result<List<UserBriefVO>> result = userServiceClient.getUsersByIds(new ArrayList<>(userIds));
+            if (result.getCode() != 200 || result.getData() == null) {
+                log.warn("⚠️ 批量获取用户信息失败: count={}, message={}", userIds.size(), result.getMessage());
+                return Collections.emptyMap();
+            }
+            Map<Long, UserBriefVO> users = new HashMap<>();
+            result.getData().forEach(user -> users.put(user.getId(), user));
+            return users;
+        } catch (Exception e) {
+            log.warn("⚠️ 批量获取用户信息失败: count={}, error={}", userIds.size(), e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+}
@@ -1,21 +1,25 @@
 package com.jingdezhen.tourism.review.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jingdezhen.tourism.common.dto.ReviewCreateDTO;
 import com.jingdezhen.tourism.common.entity.Orders;
 import com.jingdezhen.tourism.common.entity.Product;
 import com.jingdezhen.tourism.common.entity.Review;
-import com.jingdezhen.tourism.common.entity.User;
 import com.jingdezhen.tourism.common.exception.BusinessException;
+import com.jingdezhen.tourism.common.utils.PageCursor;
+import com.jingdezhen.tourism.common.vo.CursorPage;
+import com.jingdezhen.tourism.common.vo.ProductRatingStatVO;
 import com.jingdezhen.tourism.common.vo.Result;
 import com.jingdezhen.tourism.common.vo.ReviewVO;
+import com.jingdezhen.tourism.common.vo.UserBriefVO;
 import com.jingdezhen.tourism.review.feign.OrderServiceClient;
 import com.jingdezhen.tourism.review.feign.ProductServiceClient;
-import com.jingdezhen.tourism.review.feign.UserServiceClient;
 import com.jingdezhen.tourism.review.mapper.ReviewMapper;
 import com.jingdezhen.tourism.review.service.MessageProducerService;
 import com.jingdezhen.tourism.review.service.ReviewService;
+import com.jingdezhen.tourism.review.service.UserBriefCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
@@ -23,6 +27,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,10 +41,15 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ReviewServiceImpl implements ReviewService {
 
+    /**
+     * 单次批量统计的最大产品数
+     */
+    private static final int MAX_BATCH_IDS = 200;
+
     private final ReviewMapper reviewMapper;
     private final OrderServiceClient orderServiceClient;
     private final ProductServiceClient productServiceClient;
-    private final UserServiceClient userServiceClient;
+    private final UserBriefCache userBriefCache;
     private final MessageProducerService messageProducerService;
 
     @Override
@@ -71,17 +82,18 @@ public class ReviewServiceImpl implements ReviewService {
         messageProducerService.sendReviewChangedMessage(
             review.getId(), 
             dto.getProductId(), 
-            MessageProducerService.CHANGE_TYPE_CREATE
+            MessageProducerService.CHANGE_TYPE_CREATE,
+            review.getRating(),
+            null
         );
 
         // 返回评价信息
         ReviewVO vo = new ReviewVO();
         BeanUtils.copyProperties(review, vo);
 
-        // 查询用户信息（通过Feign调用user-service）
-        Result<User> userResult = userServiceClient.getUserById(userId);
-        if (userResult.getCode() == 200 && userResult.getData() != null) {
-            User user = userResult.getData();
+        // 查询用户信息（优先读近端缓存）
+        UserBriefVO user = userBriefCache.get(userId);
+        if (user != null) {
             vo.setUsername(user.getUsername());
             vo.setNickname(user.getNickname());
         }
@@ -105,27 +117,44 @@ public class ReviewServiceImpl implements ReviewService {
 
         Page<Review> reviewPage = reviewMapper.selectPage(page, wrapper);
 
-        // 查询用户信息（批量调用user-service）
-        List<Long> userIds = reviewPage.getRecords().stream()
+        List<ReviewVO> voList = toReviewVOsWithUser(reviewPage.getRecords());
+
+        Page<ReviewVO> voPage = new Page<>(reviewPage.getCurrent(), reviewPage.getSize(), reviewPage.getTotal());
+        voPage.setRecords(voList);
+
+        return voPage;
+    }
+
+    @Override
+    public CursorPage<ReviewVO> getProductReviewsByCursor(Long productId, String cursor, Integer size) {
+        int pageSize = PageCursor.normalizeSize(size);
+        LambdaQueryWrapper<Review> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(Review::getProductId, productId);
+        PageCursor.seek(wrapper, Review::getCreateTime, Review::getId, cursor, pageSize);
+
+        CursorPage<Review> page = CursorPage.of(reviewMapper.selectList(wrapper), pageSize,
+                Review::getCreateTime, Review::getId);
+        return page.convert(this::toReviewVOsWithUser);
+    }
+
+    /**
+     * 转换为VO（批量关联评价用户信息）
+     */
+    private List<ReviewVO> toReviewVOsWithUser(List<Review> reviews) {
+        // 查询用户信息（近端缓存未命中的部分批量调用user-service）
+        List<Long> userIds = reviews.stream()
                 .map(Review::getUserId)
                 .distinct()
                 .collect(Collectors.toList());
 
-        Map<Long, User> userMap = new HashMap<>();
-        for (Long userId : userIds) {
-            Result<User> userResult = userServiceClient.getUserById(userId);
-            if (userResult.getCode() == 200 && userResult.getData() != null) {
-                userMap.put(userId, userResult.getData());
-            }
-        }
+        Map<Long, UserBriefVO> userMap = userBriefCache.getAll(userIds);
 
         // 转换为VO
-        Map<Long, User> finalUserMap = userMap;
-        List<ReviewVO> voList = reviewPage.getRecords().stream().map(review -> {
+        return reviews.stream().map(review -> {
             ReviewVO vo = new ReviewVO();
             BeanUtils.copyProperties(review, vo);
 
-            User user = finalUserMap.get(review.getUserId());
+            UserBriefVO user = userMap.get(review.getUserId());
             if (user != null) {
                 vo.setUsername(user.getUsername());
                 vo.setNickname(user.getNickname());
@@ -133,11 +162,6 @@ public class ReviewServiceImpl implements ReviewService {
 
             return vo;
         }).collect(Collectors.toList());
-
-        Page<ReviewVO> voPage = new Page<>(reviewPage.getCurrent(), reviewPage.getSize(), reviewPage.getTotal());
-        voPage.setRecords(voList);
-
-        return voPage;
     }
 
     @Override
@@ -156,10 +180,10 @@ public class ReviewServiceImpl implements ReviewService {
                 .collect(Collectors.toList());
 
         Map<Long, Product> productMap = new HashMap<>();
-        for (Long productId : productIds) {
-            Result<Product> productResult = productServiceClient.getProductById(productId);
+        if (!productIds.isEmpty()) {
+            Result<List<Product>> productResult = productServiceClient.getProductsByIds(productIds);
             if (productResult.getCode() == 200 && productResult.getData() != null) {
-                productMap.put(productId, productResult.getData());
+                productResult.getData().forEach(product -> productMap.put(product.getId(), product));
             }
         }
 
@@ -194,13 +218,23 @@ public class ReviewServiceImpl implements ReviewService {
             throw new BusinessException("无权删除此评价");
         }
 
-        reviewMapper.deleteById(reviewId);
+        // 同时更新修改时间，产品评分对账据此跳过最近有变更的产品；
+        // 逻辑删除条件（deleted = 0）由框架追加，并发删除时只有一方更新成功并发送消息
+        int deleted = reviewMapper.update(null, new LambdaUpdateWrapper<Review>()
+            .set(Review::getDeleted, 1)
+            .set(Review::getUpdateTime, LocalDateTime.now())
+            .eq(Review::getId, reviewId));
+        if (deleted == 0) {
+            throw new BusinessException("评价不存在");
+        }
 
         // 发送评论删除消息，异步更新产品评分
         messageProducerService.sendReviewChangedMessage(
             reviewId, 
             review.getProductId(), 
-            MessageProducerService.CHANGE_TYPE_DELETE
+            MessageProducerService.CHANGE_TYPE_DELETE,
+            null,
+            review.getRating()
         );
     }
 
@@ -217,28 +251,21 @@ public class ReviewServiceImpl implements ReviewService {
         List<Long> userIds = reviewPage.getRecords().stream().map(Review::getUserId).distinct().collect(Collectors.toList());
         List<Long> productIds = reviewPage.getRecords().stream().map(Review::getProductId).distinct().collect(Collectors.toList());
 
-        Map<Long, User> userMap = new HashMap<>();
-        for (Long userId : userIds) {
-            Result<User> userResult = userServiceClient.getUserById(userId);
-            if (userResult.getCode() == 200 && userResult.getData() != null) {
-                userMap.put(userId, userResult.getData());
-            }
-        }
+        Map<Long, UserBriefVO> userMap = userBriefCache.getAll(userIds);
 
         Map<Long, Product> productMap = new HashMap<>();
-        for (Long productId : productIds) {
-            Result<Product> productResult = productServiceClient.getProductById(productId);
+        if (!productIds.isEmpty()) {
+            Result<List<Product>> productResult = productServiceClient.getProductsByIds(productIds);
             if (productResult.getCode() == 200 && productResult.getData() != null) {
-                productMap.put(productId, productResult.getData());
+                productResult.getData().forEach(product -> productMap.put(product.getId(), product));
             }
         }
 
-        Map<Long, User> finalUserMap = userMap;
         Map<Long, Product> finalProductMap = productMap;
         List<ReviewVO> voList = reviewPage.getRecords().stream().map(review -> {
             ReviewVO vo = new ReviewVO();
             BeanUtils.copyProperties(review, vo);
-            User user = finalUserMap.get(review.getUserId());
+            UserBriefVO user = userMap.get(review.getUserId());
             if (user != null) {
                 vo.setUsername(user.getUsername());
                 vo.setNickname(user.getNickname());
@@ -278,6 +305,17 @@ public class ReviewServiceImpl implements ReviewService {
         return reviewMapper.selectList(wrapper);
     }
 
+    @Override
+    public List<ProductRatingStatVO> getRatingStats(List<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (productIds.size() > MAX_BATCH_IDS) {
+            throw new BusinessException("单次最多统计" + MAX_BATCH_IDS + "个产品");
+        }
+        return reviewMapper.selectRatingStats(productIds);
+    }
+
     /**
      * 更新产品评分（通过Feign调用product-service）
      * 注意：此方法已废弃，现在通过消息队列异步更新
@@ -0,0 +1,5 @@
+-- 游标分页索引：/review/product/{productId}/cursor
+-- 条件 product_id = ? AND (create_time < ? OR (create_time = ? AND id < ?))
+-- ORDER BY create_time DESC, id DESC LIMIT size + 1
+ALTER TABLE review
+    ADD INDEX idx_review_product_create_time (product_id, create_time, id);
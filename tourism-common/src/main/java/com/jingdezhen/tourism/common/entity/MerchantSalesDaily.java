@@ -0,0 +1,63 @@
+package com.jingdezhen.tourism.common.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 商户产品日销售统计实体类
+ * 由订单状态流转增量累加，作为增量写入时各计数字段表示本次的变化量
+ */
+@Data
+@TableName("merchant_sales_daily")
+public class MerchantSalesDaily {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private Long merchantId;
+
+    private Long productId;
+
+    private LocalDate statDate;
+
+    /**
+     * 下单数
+     */
+    private Integer orderCount;
+
+    /**
+     * 支付订单数
+     */
+    private Integer paidCount;
+
+    /**
+     * 支付件数
+     */
+    private Integer quantity;
+
+    /**
+     * 支付金额
+     */
+    private BigDecimal gmv;
+
+    /**
+     * 取消订单数
+     */
+    private Integer cancelCount;
+
+    /**
+     * 退款订单数
+     */
+    private Integer refundCount;
+
+    /**
+     * 退款金额
+     */
+    private BigDecimal refundAmount;
+
+    private LocalDateTime updateTime;
+}
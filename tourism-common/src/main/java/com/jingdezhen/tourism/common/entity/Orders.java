@@ -33,6 +33,11 @@ public class Orders {
 
     private Integer quantity;
 
+    /**
+     * 下单时是否按订单号预占库存：1-是；0/null-直接扣减（抢购订单、启用预占前的订单）
+     */
+    private Integer stockHeld;
+
     private BigDecimal totalAmount;
 
     private LocalDate bookingDate;
@@ -43,6 +48,12 @@ public class Orders {
 
     private String contactPhone;
 
+    /**
+     * 反转的联系电话，用于按手机尾号前缀匹配（插入时自动填充）
+     */
+    @TableField(fill = FieldFill.INSERT)
+    private String contactPhoneRev;
+
     private String remark;
 
     /**
@@ -0,0 +1,10 @@
+package com.jingdezhen.tourism.common.entity;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+
+/**
+ * 归档订单实体类（表结构与orders相同）
+ */
+@TableName("orders_archive")
+public class OrdersArchive extends Orders {
+}
@@ -49,6 +49,18 @@ public class Product {
 
     private BigDecimal rating;
 
+    /**
+     * 评分总和（与评论数一起由评论变更增量维护，rating = ratingSum / ratingCount），updateById不会写入
+     */
+    @TableField(updateStrategy = FieldStrategy.NEVER)
+    private Integer ratingSum;
+
+    /**
+     * 评论数
+     */
+    @TableField(updateStrategy = FieldStrategy.NEVER)
+    private Integer ratingCount;
+
     /**
      * 标签（JSON数组）
      */
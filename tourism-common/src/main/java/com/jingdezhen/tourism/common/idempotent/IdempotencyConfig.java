@@ -0,0 +1,29 @@
+package com.jingdezhen.tourism.common.idempotent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * 注册幂等拦截器（只处理标注了 @Idempotent 的接口，未配置Redis的服务不启用）
+ */
+@Configuration
+public class IdempotencyConfig implements WebMvcConfigurer {
+
+    @Autowired(required = false)
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (stringRedisTemplate == null) {
+            return;
+        }
+        registry.addInterceptor(new IdempotencyInterceptor(stringRedisTemplate, objectMapper));
+    }
+}
@@ -0,0 +1,131 @@
+package com.jingdezhen.tourism.common.idempotent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jingdezhen.tourism.common.vo.Result;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.MediaType;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * 幂等拦截器
+ * 用一次Lua调用抢占Key（SET NX）或读取已有结果：抢占成功则放行，
+ * 已有成功响应则直接原样返回，仍在处理中则返回409。
+ * 处理失败（非200响应或异常）时删除处理中标记，客户端可用同一个Key重试
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class IdempotencyInterceptor implements HandlerInterceptor {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    static final String KEY_ATTRIBUTE = IdempotencyInterceptor.class.getName() + ".KEY";
+    static final String TOKEN_ATTRIBUTE = IdempotencyInterceptor.class.getName() + ".TOKEN";
+    static final String COMPLETED_ATTRIBUTE = IdempotencyInterceptor.class.getName() + ".COMPLETED";
+
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final String PROCESSING_PREFIX = "PROCESSING:";
+    private static final int MAX_KEY_LENGTH = 128;
+
+    /**
+     * 抢占成功返回nil，否则返回已有的值
+     */
+    private static final RedisScript<String> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('set', KEYS[1], ARGV[1], 'NX', 'EX', ARGV[2]) then return nil end " +
+        "return redis.call('get', KEYS[1])",
+        String.class);
+
+    static final RedisScript<Long> COMPLETE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+        "redis.call('set', KEYS[1], ARGV[2], 'EX', ARGV[3]) return 1 " +
+        "else return 0 end",
+        Long.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+        "return redis.call('del', KEYS[1]) " +
+        "else return 0 end",
+        Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        Idempotent idempotent = handlerMethod.getMethodAnnotation(Idempotent.class);
+        String idempotencyKey = request.getHeader(HEADER);
+        if (idempotent == null || !StringUtils.hasText(idempotencyKey)) {
+            return true;
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            writeJson(response, objectMapper.writeValueAsString(Result.error(400, "Idempotency-Key过长")));
+            return false;
+        }
+
+        // 按用户（Authorization）+ 接口 + Key 隔离，不同用户使用相同的Key互不影响
+        String authorization = request.getHeader("Authorization");
+        String digest = DigestUtils.md5DigestAsHex(((authorization != null ? authorization : "") + "|" + idempotencyKey)
+                .getBytes(StandardCharsets.UTF_8));
+        String redisKey = KEY_PREFIX + request.getMethod() + ":" + request.getRequestURI() + ":" + digest;
+        String token = PROCESSING_PREFIX + UUID.randomUUID();
+
+        String existing;
+        try {
+            existing = stringRedisTemplate.execute(ACQUIRE_SCRIPT, Collections.singletonList(redisKey),
+                    token, String.valueOf(idempotent.processingSeconds()));
+        } catch (Exception e) {
+            // Redis不可用时按普通请求处理
+            log.warn("⚠️ 幂等Key检查失败，按普通请求处理: uri={}, error={}", request.getRequestURI(), e.getMessage());
+            return true;
+        }
+        if (existing == null) {
+            request.setAttribute(KEY_ATTRIBUTE, redisKey);
+            request.setAttribute(TOKEN_ATTRIBUTE, token);
+            return true;
+        }
+        if (existing.startsWith(PROCESSING_PREFIX)) {
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+            writeJson(response, objectMapper.writeValueAsString(Result.error(409, "请求正在处理中，请勿重复提交")));
+            return false;
+        }
+        log.debug("✅ 幂等请求返回已有结果: uri={}", request.getRequestURI());
+        writeJson(response, existing);
+        return false;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        String redisKey = (String) request.getAttribute(KEY_ATTRIBUTE);
+        if (redisKey == null || request.getAttribute(COMPLETED_ATTRIBUTE) != null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(redisKey),
+                    (String) request.getAttribute(TOKEN_ATTRIBUTE));
+        } catch (Exception e) {
+            log.warn("⚠️ 释放幂等Key失败: key={}, error={}", redisKey, e.getMessage());
+        }
+    }
+
+    private static void writeJson(HttpServletResponse response, String json) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(json);
+    }
+}
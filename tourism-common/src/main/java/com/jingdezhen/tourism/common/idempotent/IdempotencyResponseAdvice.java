@@ -0,0 +1,62 @@
+package com.jingdezhen.tourism.common.idempotent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jingdezhen.tourism.common.vo.Result;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.Collections;
+
+/**
+ * 保存幂等接口的成功响应（code=200），序列化结果与实际返回给客户端的一致
+ */
+@Slf4j
+@RestControllerAdvice
+public class IdempotencyResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Autowired(required = false)
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return stringRedisTemplate != null && returnType.hasMethodAnnotation(Idempotent.class);
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest servletRequest)
+                || !(body instanceof Result<?> result) || !Integer.valueOf(200).equals(result.getCode())) {
+            return body;
+        }
+        HttpServletRequest httpRequest = servletRequest.getServletRequest();
+        String redisKey = (String) httpRequest.getAttribute(IdempotencyInterceptor.KEY_ATTRIBUTE);
+        if (redisKey == null) {
+            return body;
+        }
+        Idempotent idempotent = returnType.getMethodAnnotation(Idempotent.class);
+        try {
+            stringRedisTemplate.execute(IdempotencyInterceptor.COMPLETE_SCRIPT, Collections.singletonList(redisKey),
+                    (String) httpRequest.getAttribute(IdempotencyInterceptor.TOKEN_ATTRIBUTE),
+                    objectMapper.writeValueAsString(body), String.valueOf(idempotent.ttlSeconds()));
+            httpRequest.setAttribute(IdempotencyInterceptor.COMPLETED_ATTRIBUTE, Boolean.TRUE);
+        } catch (Exception e) {
+            log.warn("⚠️ 保存幂等响应失败: key={}, error={}", redisKey, e.getMessage());
+        }
+        return body;
+    }
+}
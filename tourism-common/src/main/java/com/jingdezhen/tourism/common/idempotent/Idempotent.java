@@ -0,0 +1,26 @@
+package com.jingdezhen.tourism.common.idempotent;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 幂等接口
+ * 请求携带 Idempotency-Key 请求头时，同一用户对同一接口使用相同的Key重复请求，
+ * 直接返回首次成功的响应；首次请求仍在处理中时返回409。未携带请求头时不做处理
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Idempotent {
+
+    /**
+     * 成功响应的保留时间（秒）
+     */
+    long ttlSeconds() default 86400;
+
+    /**
+     * 处理中标记的最长保留时间（秒），超时后视为首次请求已失败
+     */
+    long processingSeconds() default 60;
+}
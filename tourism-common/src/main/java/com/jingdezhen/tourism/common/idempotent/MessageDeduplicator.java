@@ -0,0 +1,175 @@
+package com.jingdezhen.tourism.common.idempotent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 消息消费去重
+ * 以（消费场景, 业务键）在Redis中登记处理状态：处理前抢占 PROCESSING 标记，
+ * 处理成功（有事务时在事务提交后）改为 DONE 并保留 ttl-hours，处理失败或回滚时删除标记以便重新投递后再次处理。
+ * 本地保留最近处理完成的键，重复投递通常在本地即可判定，无需访问Redis。
+ * 未配置Redis的服务不做去重
+ */
+@Slf4j
+@Component
+public class MessageDeduplicator {
+
+    private static final String KEY_PREFIX = "mq:consumed:";
+    private static final String DONE = "DONE";
+
+    public static final int CLAIMED = 1;
+    public static final int DUPLICATE = 0;
+    public static final int IN_PROGRESS = -1;
+
+    /**
+     * 抢占处理标记
+     * 返回 1 抢占成功，0 已处理完成，-1 正在由其他消费者处理
+     */
+    private static final RedisScript<Long> CLAIM_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('set', KEYS[1], 'PROCESSING', 'NX', 'EX', ARGV[1]) then return 1 end " +
+        "if redis.call('get', KEYS[1]) == 'DONE' then return 0 end " +
+        "return -1",
+        Long.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == 'PROCESSING' then " +
+        "return redis.call('del', KEYS[1]) " +
+        "else return 0 end",
+        Long.class);
+
+    @Autowired(required = false)
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${mq.dedup.ttl-hours:72}")
+    private long ttlHours;
+
+    @Value("${mq.dedup.processing-seconds:300}")
+    private long processingSeconds;
+
+    private final Map<String, Boolean> recentlyDone;
+
+    public MessageDeduplicator(@Value("${mq.dedup.local-size:10000}") int localSize) {
+        this.recentlyDone = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > localSize;
+            }
+        });
+    }
+
+    /**
+     * 同一（场景, 业务键）只执行一次 action
+     *
+     * @param scope  消费场景，不同队列对同一消息各自去重
+     * @param key    业务键（订单ID、消息ID等），为空时不去重
+     * @param action 处理逻辑
+     * @return 是否执行了 action；已处理过的消息返回 false
+     * @throws IllegalStateException 消息正在由其他消费者处理，抛出后由RabbitMQ重新投递
+     */
+    public boolean execute(String scope, Object key, Runnable action) {
+        int claimed = claim(scope, key);
+        if (claimed == DUPLICATE) {
+            return false;
+        }
+        if (claimed == IN_PROGRESS) {
+            throw new IllegalStateException("消息正在处理中: scope=" + scope + ", key=" + key);
+        }
+
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            release(scope, key);
+            throw e;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        complete(scope, key);
+                    } else {
+                        release(scope, key);
+                    }
+                }
+            });
+        } else {
+            complete(scope, key);
+        }
+        return true;
+    }
+
+    /**
+     * 抢占处理标记（批量消费时逐条抢占，整批处理后再逐条 complete 或 release）
+     *
+     * @return CLAIMED 可以处理，DUPLICATE 已处理过，IN_PROGRESS 正在由其他消费者处理
+     */
+    public int claim(String scope, Object key) {
+        if (stringRedisTemplate == null || key == null) {
+            return CLAIMED;
+        }
+        String redisKey = redisKey(scope, key);
+        if (recentlyDone.containsKey(redisKey)) {
+            log.warn("⚠️ 重复消息已跳过: scope={}, key={}", scope, key);
+            return DUPLICATE;
+        }
+        Long claimed = stringRedisTemplate.execute(CLAIM_SCRIPT, Collections.singletonList(redisKey),
+                String.valueOf(processingSeconds));
+        if (claimed == null) {
+            return IN_PROGRESS;
+        }
+        if (claimed == DUPLICATE) {
+            recentlyDone.put(redisKey, Boolean.TRUE);
+            log.warn("⚠️ 重复消息已跳过: scope={}, key={}", scope, key);
+        }
+        return claimed.intValue();
+    }
+
+    /**
+     * 标记处理完成
+     */
+    public void complete(String scope, Object key) {
+        if (stringRedisTemplate == null || key == null) {
+            return;
+        }
+        String redisKey = redisKey(scope, key);
+        recentlyDone.put(redisKey, Boolean.TRUE);
+        try {
+            stringRedisTemplate.opsForValue().set(redisKey, DONE, Duration.ofHours(ttlHours));
+        } catch (Exception e) {
+            // 标记写入失败时，处理中标记到期前的重复投递仍会被拦截
+            log.error("❌ 写入消息处理完成标记失败: key={}, error={}", redisKey, e.getMessage());
+        }
+    }
+
+    /**
+     * 释放处理标记，重新投递后可再次处理
+     */
+    public void release(String scope, Object key) {
+        if (stringRedisTemplate == null || key == null) {
+            return;
+        }
+        String redisKey = redisKey(scope, key);
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(redisKey));
+        } catch (Exception e) {
+            log.error("❌ 释放消息处理标记失败: key={}, error={}", redisKey, e.getMessage());
+        }
+    }
+
+    private static String redisKey(String scope, Object key) {
+        return KEY_PREFIX + scope + ":" + key;
+    }
+}
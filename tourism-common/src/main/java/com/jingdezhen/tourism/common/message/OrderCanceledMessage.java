@@ -21,6 +21,11 @@ public class OrderCanceledMessage implements Serializable {
      */
     private Long orderId;
     
+    /**
+     * 订单号（用于归还库存预占）
+     */
+    private String orderNo;
+    
     /**
      * 产品ID
      */
@@ -35,5 +40,10 @@ public class OrderCanceledMessage implements Serializable {
      * 取消时间戳
      */
     private Long cancelTime;
+    
+    /**
+     * 下单时是否按订单号预占了库存（旧消息为空）
+     */
+    private Boolean stockHeld;
 }
 
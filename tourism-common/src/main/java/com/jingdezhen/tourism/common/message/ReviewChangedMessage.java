@@ -7,7 +7,8 @@ import lombok.NoArgsConstructor;
 import java.io.Serializable;
 
 /**
- * 评论变更消息（创建或删除）
+ * 评论变更消息（创建、修改或删除）
+ * 携带评分变化，产品服务据此增量更新评分总和与评论数
  */
 @Data
 @NoArgsConstructor
@@ -27,9 +28,19 @@ public class ReviewChangedMessage implements Serializable {
     private Long productId;
     
     /**
-     * 变更类型：CREATE-创建，DELETE-删除
+     * 变更类型：CREATE-创建，UPDATE-修改，DELETE-删除
      */
     private String changeType;
+
+    /**
+     * 变更后的评分（CREATE、UPDATE）
+     */
+    private Integer rating;
+
+    /**
+     * 变更前的评分（UPDATE、DELETE）
+     */
+    private Integer oldRating;
     
     /**
      * 变更时间戳
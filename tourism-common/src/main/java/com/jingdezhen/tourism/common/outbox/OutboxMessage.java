@@ -0,0 +1,64 @@
+package com.jingdezhen.tourism.common.outbox;
+
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 发件箱消息实体类
+ */
+@Data
+@TableName("outbox_message")
+public class OutboxMessage {
+
+    public static final int STATUS_PENDING = 0;
+    public static final int STATUS_SENT = 1;
+    public static final int STATUS_FAILED = 2;
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 写入消息的服务（spring.application.name），各服务只中继自己的消息
+     */
+    private String source;
+
+    private String exchange;
+
+    private String routingKey;
+
+    /**
+     * 消息类全名，中继时按此类型还原后发送
+     */
+    private String messageType;
+
+    /**
+     * 消息内容（JSON）
+     */
+    private String payload;
+
+    /**
+     * 状态：0-待发送，1-已发送，2-多次发送失败（不再自动重试，需人工处理）
+     */
+    private Integer status;
+
+    /**
+     * 发送失败次数（连接不上消息队列时不计入）
+     */
+    private Integer attempts;
+
+    /**
+     * 下次可发送时间，发送失败后按指数退避推迟
+     */
+    private LocalDateTime nextAttemptTime;
+
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+
+    private LocalDateTime sentTime;
+}
@@ -0,0 +1,11 @@
+package com.jingdezhen.tourism.common.outbox;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 发件箱消息Mapper
+ */
+@Mapper
+public interface OutboxMessageMapper extends BaseMapper<OutboxMessage> {
+}
@@ -0,0 +1,50 @@
+package com.jingdezhen.tourism.common.outbox;
+
+import lombok.Data;
+
+/**
+ * 发件箱中继配置（outbox.relay.*）
+ */
+@Data
+public class OutboxProperties {
+
+    /**
+     * 轮询间隔
+     */
+    private long intervalMs = 500;
+
+    /**
+     * 每批读取的消息数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 等待一批消息publisher confirm的超时时间
+     */
+    private long confirmTimeoutMs = 5000;
+
+    /**
+     * 超过该失败次数后不再自动重试，需通过 {@link OutboxRelay#replay(int)} 人工重放
+     */
+    private int maxAttempts = 10;
+
+    /**
+     * 失败重试的初始退避时间，之后每次翻倍
+     */
+    private long backoffInitialMs = 1000;
+
+    /**
+     * 失败重试的最大退避时间（同时用于连接不上消息队列时暂停中继）
+     */
+    private long backoffMaxMs = 300000;
+
+    /**
+     * 中继锁租期
+     */
+    private long lockLeaseSeconds = 30;
+
+    /**
+     * 已发送消息保留天数
+     */
+    private int retentionDays = 3;
+}
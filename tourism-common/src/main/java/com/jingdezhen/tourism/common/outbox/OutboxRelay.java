@@ -0,0 +1,280 @@
+package com.jingdezhen.tourism.common.outbox;
+
+import com.alibaba.fastjson2.JSON;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.jingdezhen.tourism.common.utils.RedisLockUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * 发件箱中继
+ * 定时按批读取本服务已到发送时间的待发送消息，整批异步发送后统一等待publisher confirm，
+ * 确认成功的批量标记为已发送，失败的累计次数并按指数退避推迟下次发送，超过最大次数后停止重试，可人工重放。
+ * 连接不上消息队列时不计失败次数，整个中继按指数退避暂停，避免故障期间把消息全部耗尽重试次数。
+ * 多实例部署时通过分布式锁保证同一时刻只有一个实例在中继，消息ID固定为 outbox-{id}，
+ * 极端情况下（已发送但未来得及标记）可能重复投递，消费端需保证幂等
+ */
+@Slf4j
+public class OutboxRelay {
+
+    private static final int MAX_BATCHES_PER_ROUND = 20;
+    private static final int CLEANUP_BATCH_SIZE = 1000;
+
+    private final OutboxMessageMapper outboxMessageMapper;
+    private final RabbitTemplate rabbitTemplate;
+    private final RedisLockUtil redisLockUtil;
+    private final String source;
+    private final OutboxProperties properties;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 连续连接失败次数与暂停截止时间（仅中继线程访问）
+     */
+    private int connectionFailures;
+    private long pausedUntil;
+
+    public OutboxRelay(OutboxMessageMapper outboxMessageMapper, RabbitTemplate rabbitTemplate,
+                       RedisLockUtil redisLockUtil, String source, OutboxProperties properties) {
+        this.outboxMessageMapper = outboxMessageMapper;
+        this.rabbitTemplate = rabbitTemplate;
+        this.redisLockUtil = redisLockUtil;
+        this.source = source;
+        this.properties = properties;
+    }
+
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::relay,
+                properties.getIntervalMs(), properties.getIntervalMs(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::cleanup, 10, 60, TimeUnit.MINUTES);
+        log.info("✅ 发件箱中继已启动: source={}, interval={}ms, batchSize={}",
+                source, properties.getIntervalMs(), properties.getBatchSize());
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * 中继一轮：持锁期间连续处理，直到没有满批的待发送消息
+     */
+    public void relay() {
+        if (System.currentTimeMillis() < pausedUntil) {
+            return;
+        }
+        String lockKey = "outbox:relay:" + source;
+        String lockValue = redisLockUtil.tryLock(lockKey, 1, properties.getLockLeaseSeconds());
+        if (lockValue == null) {
+            return;
+        }
+        try {
+            for (int i = 0; i < MAX_BATCHES_PER_ROUND; i++) {
+                if (relayBatch() < properties.getBatchSize()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("❌ 发件箱中继失败: source={}, error={}", source, e.getMessage(), e);
+        } finally {
+            redisLockUtil.releaseLock(lockKey, lockValue);
+        }
+    }
+
+    /**
+     * 发送一批消息
+     *
+     * @return 本批读取的消息数
+     */
+    private int relayBatch() throws InterruptedException {
+        List<OutboxMessage> batch = outboxMessageMapper.selectList(new LambdaQueryWrapper<OutboxMessage>()
+                .eq(OutboxMessage::getSource, source)
+                .eq(OutboxMessage::getStatus, OutboxMessage.STATUS_PENDING)
+                .le(OutboxMessage::getNextAttemptTime, LocalDateTime.now())
+                .orderByAsc(OutboxMessage::getId)
+                .last("LIMIT " + properties.getBatchSize()));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, OutboxMessage> messages = batch.stream()
+                .collect(Collectors.toMap(OutboxMessage::getId, message -> message));
+        Map<Long, CompletableFuture<CorrelationData.Confirm>> confirms = new LinkedHashMap<>();
+        List<OutboxMessage> failed = new ArrayList<>();
+        boolean brokerUnavailable = false;
+        for (OutboxMessage message : batch) {
+            try {
+                Object body = JSON.parseObject(message.getPayload(), Class.forName(message.getMessageType()));
+                CorrelationData correlation = new CorrelationData(String.valueOf(message.getId()));
+                rabbitTemplate.convertAndSend(message.getExchange(), message.getRoutingKey(), body, amqpMessage -> {
+                    amqpMessage.getMessageProperties().setMessageId("outbox-" + message.getId());
+                    return amqpMessage;
+                }, correlation);
+                confirms.put(message.getId(), correlation.getFuture());
+            } catch (AmqpConnectException | AmqpIOException e) {
+                // 连接不上消息队列：剩余消息留待恢复后发送，不计失败次数
+                log.warn("⚠️ 连接消息队列失败，发件箱中继暂停: source={}, error={}", source, e.getMessage());
+                brokerUnavailable = true;
+                break;
+            } catch (Exception e) {
+                log.warn("⚠️ 发件箱消息发送失败: id={}, routingKey={}, error={}",
+                        message.getId(), message.getRoutingKey(), e.getMessage());
+                failed.add(message);
+            }
+        }
+
+        // 整批统一等待确认，而不是逐条同步等待
+        try {
+            CompletableFuture.allOf(confirms.values().toArray(new CompletableFuture[0]))
+                    .get(properties.getConfirmTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            log.warn("⚠️ 部分发件箱消息未在{}ms内确认，将在下轮重试", properties.getConfirmTimeoutMs());
+        }
+
+        List<Long> sent = new ArrayList<>();
+        confirms.forEach((id, future) -> {
+            CorrelationData.Confirm confirm = future.isDone() && !future.isCompletedExceptionally()
+                    ? future.getNow(null) : null;
+            if (confirm != null && confirm.isAck()) {
+                sent.add(id);
+            } else {
+                failed.add(messages.get(id));
+            }
+        });
+
+        if (!sent.isEmpty()) {
+            outboxMessageMapper.update(null, new LambdaUpdateWrapper<OutboxMessage>()
+                    .set(OutboxMessage::getStatus, OutboxMessage.STATUS_SENT)
+                    .set(OutboxMessage::getSentTime, LocalDateTime.now())
+                    .in(OutboxMessage::getId, sent));
+        }
+        if (!failed.isEmpty()) {
+            markFailed(failed);
+        }
+        log.debug("✅ 发件箱中继完成一批: source={}, sent={}, failed={}", source, sent.size(), failed.size());
+        if (brokerUnavailable) {
+            connectionFailures++;
+            pausedUntil = System.currentTimeMillis() + backoffMs(connectionFailures);
+            return 0;
+        }
+        connectionFailures = 0;
+        return batch.size();
+    }
+
+    /**
+     * 累计失败次数并按指数退避推迟下次发送，达到最大次数的标记为发送失败
+     */
+    private void markFailed(List<OutboxMessage> messages) {
+        // 同一批中失败次数相同的消息一起更新
+        Map<Integer, List<Long>> idsByAttempts = messages.stream().collect(Collectors.groupingBy(
+                message -> message.getAttempts() != null ? message.getAttempts() + 1 : 1, TreeMap::new,
+                Collectors.mapping(OutboxMessage::getId, Collectors.toList())));
+        int parked = 0;
+        for (Map.Entry<Integer, List<Long>> entry : idsByAttempts.entrySet()) {
+            int attempts = entry.getKey();
+            boolean park = attempts >= properties.getMaxAttempts();
+            int updated = outboxMessageMapper.update(null, new LambdaUpdateWrapper<OutboxMessage>()
+                    .set(OutboxMessage::getAttempts, attempts)
+                    .set(OutboxMessage::getNextAttemptTime,
+                            LocalDateTime.now().plus(backoffMs(attempts), ChronoUnit.MILLIS))
+                    .set(park, OutboxMessage::getStatus, OutboxMessage.STATUS_FAILED)
+                    .in(OutboxMessage::getId, entry.getValue())
+                    .eq(OutboxMessage::getStatus, OutboxMessage.STATUS_PENDING));
+            if (park) {
+                parked += updated;
+            }
+        }
+        if (parked > 0) {
+            log.error("❌ 发件箱消息多次发送失败，已停止重试，请人工处理: source={}, count={}", source, parked);
+        }
+    }
+
+    /**
+     * 第n次失败后的退避时间：初始退避 * 2^(n-1)，不超过最大退避
+     */
+    private long backoffMs(int failures) {
+        int shift = Math.min(Math.max(failures - 1, 0), 30);
+        return Math.min(properties.getBackoffInitialMs() << shift, properties.getBackoffMaxMs());
+    }
+
+    /**
+     * 本服务发送失败（已停止重试）的消息数
+     */
+    public long failedCount() {
+        return outboxMessageMapper.selectCount(new LambdaQueryWrapper<OutboxMessage>()
+                .eq(OutboxMessage::getSource, source)
+                .eq(OutboxMessage::getStatus, OutboxMessage.STATUS_FAILED));
+    }
+
+    /**
+     * 重放发送失败的消息：按ID顺序重置为待发送，失败次数清零，由中继下轮发送
+     *
+     * @return 重放的消息数
+     */
+    public int replay(int limit) {
+        List<Long> ids = outboxMessageMapper.selectList(new LambdaQueryWrapper<OutboxMessage>()
+                        .select(OutboxMessage::getId)
+                        .eq(OutboxMessage::getSource, source)
+                        .eq(OutboxMessage::getStatus, OutboxMessage.STATUS_FAILED)
+                        .orderByAsc(OutboxMessage::getId)
+                        .last("LIMIT " + limit))
+                .stream().map(OutboxMessage::getId).toList();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int replayed = outboxMessageMapper.update(null, new LambdaUpdateWrapper<OutboxMessage>()
+                .set(OutboxMessage::getStatus, OutboxMessage.STATUS_PENDING)
+                .set(OutboxMessage::getAttempts, 0)
+                .set(OutboxMessage::getNextAttemptTime, LocalDateTime.now())
+                .in(OutboxMessage::getId, ids)
+                .eq(OutboxMessage::getStatus, OutboxMessage.STATUS_FAILED));
+        log.info("✅ 发件箱失败消息已重置为待发送: source={}, count={}", source, replayed);
+        return replayed;
+    }
+
+    /**
+     * 分批删除超过保留期的已发送消息
+     */
+    private void cleanup() {
+        try {
+            LocalDateTime before = LocalDateTime.now().minusDays(properties.getRetentionDays());
+            int deleted;
+            do {
+                deleted = outboxMessageMapper.delete(new LambdaQueryWrapper<OutboxMessage>()
+                        .eq(OutboxMessage::getSource, source)
+                        .eq(OutboxMessage::getStatus, OutboxMessage.STATUS_SENT)
+                        .lt(OutboxMessage::getSentTime, before)
+                        .last("LIMIT " + CLEANUP_BATCH_SIZE));
+            } while (deleted == CLEANUP_BATCH_SIZE);
+        } catch (Exception e) {
+            log.warn("⚠️ 清理发件箱消息失败: source={}, error={}", source, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.jingdezhen.tourism.common.outbox;
+
+import com.alibaba.fastjson2.JSON;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+
+/**
+ * 发件箱写入
+ * 在业务事务内调用：消息与业务数据同库同事务落表，事务回滚时消息随之丢弃，
+ * 提交后由 {@link OutboxRelay} 异步投递到RabbitMQ，请求线程不访问消息队列
+ */
+@Slf4j
+public class OutboxService {
+
+    private final OutboxMessageMapper outboxMessageMapper;
+    private final String source;
+
+    public OutboxService(OutboxMessageMapper outboxMessageMapper, String source) {
+        this.outboxMessageMapper = outboxMessageMapper;
+        this.source = source;
+    }
+
+    /**
+     * 写入一条待发送消息
+     */
+    public void save(String exchange, String routingKey, Object message) {
+        OutboxMessage outbox = new OutboxMessage();
+        outbox.setSource(source);
+        outbox.setExchange(exchange);
+        outbox.setRoutingKey(routingKey);
+        outbox.setMessageType(message.getClass().getName());
+        outbox.setPayload(JSON.toJSONString(message));
+        outbox.setStatus(OutboxMessage.STATUS_PENDING);
+        outbox.setAttempts(0);
+        outbox.setNextAttemptTime(LocalDateTime.now());
+        outboxMessageMapper.insert(outbox);
+        log.debug("✅ 消息已写入发件箱: id={}, routingKey={}", outbox.getId(), routingKey);
+    }
+}
@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
 import java.util.Collections;
@@ -19,10 +20,11 @@ public class RedisLockUtil {
     @Autowired(required = false)
     private StringRedisTemplate stringRedisTemplate;
     
-    private static final String LOCK_SCRIPT = 
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
         "if redis.call('get', KEYS[1]) == ARGV[1] then " +
         "return redis.call('del', KEYS[1]) " +
-        "else return 0 end";
+        "else return 0 end",
+        Long.class);
     
     private static final String LOCK_VALUE_PREFIX = "lock:value:";
     private static final String LOCK_KEY_PREFIX = "lock:";
@@ -67,11 +69,7 @@ public class RedisLockUtil {
         String fullLockKey = LOCK_KEY_PREFIX + lockKey;
         
         try {
-            DefaultRedisScript<Long> script = new DefaultRedisScript<>();
-            script.setScriptText(LOCK_SCRIPT);
-            script.setResultType(Long.class);
-            
-            Long result = stringRedisTemplate.execute(script, 
+            Long result = stringRedisTemplate.execute(UNLOCK_SCRIPT, 
                 Collections.singletonList(fullLockKey), 
                 lockValue);
             
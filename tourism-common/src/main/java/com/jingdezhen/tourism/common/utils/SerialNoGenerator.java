@@ -0,0 +1,225 @@
+package com.jingdezhen.tourism.common.utils;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 业务流水号生成器（订单号等）
+ * 格式：yyyyMMddHHmmss(14位) + 机器号(3位) + 秒内序号(3位)，共20位。
+ * 机器号从Redis租约获取，保证同一时刻各实例不重复；获取失败或租约到期未能续上时不再生成号码（抛出异常），
+ * 直到重新持有租约，避免与接手该机器号的实例重复。同一实例内用CAS递增的逻辑时钟保证单调递增，
+ * 单秒序号用完时借用下一秒，时钟回拨时沿用上次的秒数，均不会生成重复号码。
+ * 号码按时间递增，写入B+树索引时总是追加到末尾。
+ * 机器号在首次生成时才获取，不使用的服务不会访问Redis
+ */
+@Slf4j
+@Component
+public class SerialNoGenerator {
+
+    private static final int WORKER_RANGE = 1000;
+    private static final int SEQUENCE_RANGE = 1000;
+    private static final String WORKER_KEY_PREFIX = "serial:worker:";
+    private static final long LEASE_SECONDS = 60;
+    private static final long RENEW_INTERVAL_SECONDS = 20;
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+        "return redis.call('expire', KEYS[1], ARGV[2]) " +
+        "else return 0 end",
+        Long.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+        "return redis.call('del', KEYS[1]) " +
+        "else return 0 end",
+        Long.class);
+
+    @Autowired(required = false)
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final String instanceId = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+
+    /**
+     * 逻辑时钟：秒数 * SEQUENCE_RANGE + 秒内序号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    private volatile int workerId = -1;
+
+    /**
+     * 租约有效期截止时间（毫秒），按发起获取/续约请求的时间计算，早于Redis中的实际过期时间
+     */
+    private volatile long leaseDeadline;
+
+    /**
+     * 最近一次格式化的时间前缀（同一秒内复用）
+     */
+    private volatile TimePrefix lastPrefix = new TimePrefix(-1, "");
+
+    private ScheduledExecutorService renewer;
+
+    @PreDestroy
+    public synchronized void destroy() {
+        if (renewer != null) {
+            renewer.shutdownNow();
+        }
+        if (stringRedisTemplate != null && workerId >= 0) {
+            try {
+                stringRedisTemplate.execute(RELEASE_SCRIPT,
+                        Collections.singletonList(WORKER_KEY_PREFIX + workerId), instanceId);
+            } catch (Exception e) {
+                log.warn("⚠️ 释放流水号机器号失败: workerId={}, error={}", workerId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 生成下一个流水号
+     */
+    public String nextNo() {
+        if (System.currentTimeMillis() >= leaseDeadline) {
+            ensureLease();
+        }
+        long next;
+        while (true) {
+            long current = state.get();
+            long nowSecond = System.currentTimeMillis() / 1000;
+            next = Math.max(current + 1, nowSecond * SEQUENCE_RANGE);
+            if (state.compareAndSet(current, next)) {
+                break;
+            }
+        }
+        long second = next / SEQUENCE_RANGE;
+        int sequence = (int) (next % SEQUENCE_RANGE);
+
+        StringBuilder no = new StringBuilder(20);
+        no.append(timePrefix(second));
+        appendPadded(no, workerId);
+        appendPadded(no, sequence);
+        return no.toString();
+    }
+
+    /**
+     * 首次使用时获取机器号并启动续约；租约已到期时同步续约或重新获取，仍失败则抛出异常
+     */
+    private synchronized void ensureLease() {
+        if (System.currentTimeMillis() < leaseDeadline) {
+            return;
+        }
+        if (workerId < 0) {
+            acquireWorkerId();
+        } else {
+            renewWorkerId();
+        }
+        if (System.currentTimeMillis() >= leaseDeadline) {
+            throw new IllegalStateException("流水号机器号租约不可用，暂停生成流水号");
+        }
+        if (renewer == null) {
+            renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "serial-no-worker-renew");
+                thread.setDaemon(true);
+                return thread;
+            });
+            renewer.scheduleWithFixedDelay(this::renewWorkerId,
+                    RENEW_INTERVAL_SECONDS, RENEW_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private String timePrefix(long second) {
+        TimePrefix prefix = lastPrefix;
+        if (prefix.second() != second) {
+            String text = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZONE).format(TIME_FORMAT);
+            prefix = new TimePrefix(second, text);
+            lastPrefix = prefix;
+        }
+        return prefix.text();
+    }
+
+    private static void appendPadded(StringBuilder sb, int value) {
+        if (value < 100) {
+            sb.append('0');
+        }
+        if (value < 10) {
+            sb.append('0');
+        }
+        sb.append(value);
+    }
+
+    /**
+     * 从随机位置开始依次尝试占用空闲机器号，失败时不设置租约（调用方据此停止生成）
+     */
+    private void acquireWorkerId() {
+        if (stringRedisTemplate == null) {
+            log.error("❌ 未配置Redis，无法获取流水号机器号");
+            return;
+        }
+        int start = ThreadLocalRandom.current().nextInt(WORKER_RANGE);
+        try {
+            for (int i = 0; i < WORKER_RANGE; i++) {
+                int candidate = (start + i) % WORKER_RANGE;
+                long requestTime = System.currentTimeMillis();
+                Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(
+                        WORKER_KEY_PREFIX + candidate, instanceId, LEASE_SECONDS, TimeUnit.SECONDS);
+                if (Boolean.TRUE.equals(acquired)) {
+                    workerId = candidate;
+                    leaseDeadline = requestTime + LEASE_SECONDS * 1000;
+                    log.info("✅ 流水号机器号租约获取成功: workerId={}", candidate);
+                    return;
+                }
+            }
+            log.error("❌ 流水号机器号已全部占用");
+        } catch (Exception e) {
+            log.error("❌ 流水号机器号租约获取失败: error={}", e.getMessage());
+        }
+    }
+
+    /**
+     * 续约机器号；租约已丢失（如Redis长时间不可用后被他人占用）时立即停止使用并重新获取
+     */
+    private synchronized void renewWorkerId() {
+        if (stringRedisTemplate == null) {
+            return;
+        }
+        try {
+            long requestTime = System.currentTimeMillis();
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT,
+                    Collections.singletonList(WORKER_KEY_PREFIX + workerId), instanceId, String.valueOf(LEASE_SECONDS));
+            if (renewed == null || renewed == 0) {
+                Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(
+                        WORKER_KEY_PREFIX + workerId, instanceId, LEASE_SECONDS, TimeUnit.SECONDS);
+                if (!Boolean.TRUE.equals(acquired)) {
+                    log.warn("⚠️ 流水号机器号租约已被占用，重新获取: workerId={}", workerId);
+                    leaseDeadline = 0;
+                    acquireWorkerId();
+                    return;
+                }
+            }
+            leaseDeadline = requestTime + LEASE_SECONDS * 1000;
+        } catch (Exception e) {
+            log.warn("⚠️ 流水号机器号续约失败，租约到期后暂停生成: workerId={}, error={}", workerId, e.getMessage());
+        }
+    }
+
+    private record TimePrefix(long second, String text) {
+    }
+}
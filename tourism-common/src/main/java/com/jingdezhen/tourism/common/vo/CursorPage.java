@@ -0,0 +1,48 @@
+package com.jingdezhen.tourism.common.vo;
+
+import com.jingdezhen.tourism.common.utils.PageCursor;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页结果（按 create_time, id 倒序，不查询总数）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> records;
+
+    /**
+     * 下一页游标，没有更多数据时为空
+     */
+    private String nextCursor;
+
+    private Boolean hasMore;
+
+    /**
+     * 由多查询一条的结果构造分页：多出的一条只用于判断是否还有下一页
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size,
+                                       Function<T, LocalDateTime> createTime, Function<T, Long> id) {
+        if (rows.size() <= size) {
+            return new CursorPage<>(rows, null, false);
+        }
+        List<T> records = rows.subList(0, size);
+        T last = records.get(size - 1);
+        return new CursorPage<>(records, PageCursor.encode(createTime.apply(last), id.apply(last)), true);
+    }
+
+    /**
+     * 转换记录类型，游标保持不变
+     */
+    public <R> CursorPage<R> convert(Function<List<T>, List<R>> converter) {
+        return new CursorPage<>(converter.apply(records), nextCursor, hasMore);
+    }
+}
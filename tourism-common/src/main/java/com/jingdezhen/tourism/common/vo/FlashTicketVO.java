@@ -0,0 +1,27 @@
+package com.jingdezhen.tourism.common.vo;
+
+import lombok.Data;
+
+/**
+ * 抢购排队凭证VO
+ */
+@Data
+public class FlashTicketVO {
+
+    /**
+     * 凭证号（即订单号）
+     */
+    private String ticketId;
+
+    /**
+     * 状态：PENDING-排队中，SUCCESS-下单成功，FAILED-下单失败
+     */
+    private String status;
+
+    /**
+     * 下单成功后的订单ID
+     */
+    private Long orderId;
+
+    private String message;
+}
@@ -0,0 +1,23 @@
+package com.jingdezhen.tourism.common.vo;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 商户经营看板视图对象
+ */
+@Data
+public class MerchantDashboardVO {
+    private LocalDate startDate;
+    private LocalDate endDate;
+    /**
+     * 区间汇总
+     */
+    private MerchantSalesVO total;
+    /**
+     * 按天统计（无数据的日期不返回）
+     */
+    private List<MerchantSalesVO> daily;
+}
@@ -0,0 +1,24 @@
+package com.jingdezhen.tourism.common.vo;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 商户销售统计视图对象
+ */
+@Data
+public class MerchantSalesVO {
+    /**
+     * 统计日期（汇总行为空）
+     */
+    private LocalDate statDate;
+    private Long orderCount;
+    private Long paidCount;
+    private Long quantity;
+    private BigDecimal gmv;
+    private Long cancelCount;
+    private Long refundCount;
+    private BigDecimal refundAmount;
+}
@@ -0,0 +1,25 @@
+package com.jingdezhen.tourism.common.vo;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 产品评分统计视图对象
+ */
+@Data
+public class ProductRatingStatVO {
+    private Long productId;
+    /**
+     * 评分总和
+     */
+    private Integer ratingSum;
+    /**
+     * 评论数
+     */
+    private Integer ratingCount;
+    /**
+     * 评论最近一次变更时间（含已删除的评论）
+     */
+    private LocalDateTime lastChangeTime;
+}
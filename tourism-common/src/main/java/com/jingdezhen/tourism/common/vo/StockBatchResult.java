@@ -0,0 +1,48 @@
+package com.jingdezhen.tourism.common.vo;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 批量库存操作结果（全部成功或全部不生效）
+ */
+@Data
+public class StockBatchResult {
+
+    /**
+     * 是否成功
+     */
+    private Boolean success;
+
+    /**
+     * 失败时导致失败的商品ID
+     */
+    private Long failedProductId;
+
+    /**
+     * 失败原因
+     */
+    private String failReason;
+
+    /**
+     * 成功时各商品操作后的剩余库存
+     */
+    private Map<Long, Integer> remaining = new LinkedHashMap<>();
+
+    public static StockBatchResult success(Map<Long, Integer> remaining) {
+        StockBatchResult result = new StockBatchResult();
+        result.setSuccess(true);
+        result.setRemaining(remaining);
+        return result;
+    }
+
+    public static StockBatchResult fail(Long productId, String reason) {
+        StockBatchResult result = new StockBatchResult();
+        result.setSuccess(false);
+        result.setFailedProductId(productId);
+        result.setFailReason(reason);
+        return result;
+    }
+}
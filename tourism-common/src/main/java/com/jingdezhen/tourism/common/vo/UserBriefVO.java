@@ -0,0 +1,18 @@
+package com.jingdezhen.tourism.common.vo;
+
+import lombok.Data;
+
+/**
+ * 用户简要信息VO（供其他服务渲染用户昵称、头像使用，不含敏感字段）
+ */
+@Data
+public class UserBriefVO {
+
+    private Long id;
+
+    private String username;
+
+    private String nickname;
+
+    private String avatar;
+}
@@ -6,12 +6,15 @@ import com.jingdezhen.tourism.common.dto.UserRegisterDTO;
 import com.jingdezhen.tourism.common.dto.UserUpdateDTO;
 import com.jingdezhen.tourism.common.utils.TokenUtil;
 import com.jingdezhen.tourism.common.vo.Result;
+import com.jingdezhen.tourism.common.vo.UserBriefVO;
 import com.jingdezhen.tourism.common.vo.UserVO;
 import com.jingdezhen.tourism.user.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 /**
  * 用户Controller
  */
@@ -59,6 +62,15 @@ public class UserController {
         return Result.success(user);
     }
 
+    /**
+     * 批量获取用户简要信息（供其他服务调用，最多500个）
+     */
+    @PostMapping("/batch")
+    public Result<List<UserBriefVO>> getUsersByIds(@RequestBody List<Long> ids) {
+        List<UserBriefVO> users = userService.getUserBriefs(ids);
+        return Result.success(users);
+    }
+
     /**
      * 获取当前登录用户信息
      * 需要登录
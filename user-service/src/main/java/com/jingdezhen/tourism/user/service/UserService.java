@@ -5,8 +5,11 @@ import com.jingdezhen.tourism.common.dto.UserLoginDTO;
 import com.jingdezhen.tourism.common.dto.UserRegisterDTO;
 import com.jingdezhen.tourism.common.dto.UserUpdateDTO;
 import com.jingdezhen.tourism.common.entity.User;
+import com.jingdezhen.tourism.common.vo.UserBriefVO;
 import com.jingdezhen.tourism.common.vo.UserVO;
 
+import java.util.List;
+
 /**
  * 用户Service接口
  */
@@ -56,5 +59,10 @@ public interface UserService {
      * 根据ID获取用户实体（供其他服务调用）
      */
     User getUserEntityById(Long id);
+
+    /**
+     * 根据ID批量获取用户简要信息（供其他服务调用，不存在的用户跳过）
+     */
+    List<UserBriefVO> getUserBriefs(List<Long> ids);
 }
 
@@ -9,6 +9,7 @@ import com.jingdezhen.tourism.common.entity.User;
 import com.jingdezhen.tourism.common.exception.BusinessException;
 import com.jingdezhen.tourism.common.utils.JwtUtil;
 import com.jingdezhen.tourism.common.utils.PasswordUtil;
+import com.jingdezhen.tourism.common.vo.UserBriefVO;
 import com.jingdezhen.tourism.common.vo.UserVO;
 import com.jingdezhen.tourism.user.mapper.UserMapper;
 import com.jingdezhen.tourism.user.service.UserService;
@@ -19,6 +20,9 @@ import org.springframework.util.StringUtils;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * 用户Service实现类
@@ -30,6 +34,8 @@ public class UserServiceImpl implements UserService {
     private final UserMapper userMapper;
     private final JwtUtil jwtUtil;
 
+    private static final int MAX_BATCH_IDS = 500;
+
     @Override
     public void register(UserRegisterDTO dto) {
         // 检查用户名是否已存在
@@ -105,6 +111,26 @@ public class UserServiceImpl implements UserService {
         return user;
     }
 
+    @Override
+    public List<UserBriefVO> getUserBriefs(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinctIds.size() > MAX_BATCH_IDS) {
+            throw new BusinessException("单次最多查询" + MAX_BATCH_IDS + "个用户");
+        }
+        // 只查询展示所需的列，不读取密码等敏感字段
+        LambdaQueryWrapper<User> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(User::getId, User::getUsername, User::getNickname, User::getAvatar)
+                .in(User::getId, distinctIds);
+        return userMapper.selectList(wrapper).stream().map(user -> {
+            UserBriefVO vo = new UserBriefVO();
+            BeanUtils.copyProperties(user, vo);
+            return vo;
+        }).toList();
+    }
+
     @Override
     public User getUserByUsername(String username) {
         LambdaQueryWrapper<User> wrapper = new LambdaQueryWrapper<>();